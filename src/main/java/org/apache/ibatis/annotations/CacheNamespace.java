@@ -22,7 +22,9 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.Weigher;
 import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.impl.EstimatingWeigher;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 
 /**
@@ -41,6 +43,18 @@ public @interface CacheNamespace {
 
   int size() default 1024;
 
+  /**
+   * The maximum estimated memory of the entries in bytes, 0 for no limit.
+   * @since 3.5.3
+   */
+  long maxBytes() default 0;
+
+  /**
+   * The weigher estimating the memory of the entries, when {@link #maxBytes()} is set.
+   * @since 3.5.3
+   */
+  Class<? extends Weigher> weigher() default EstimatingWeigher.class;
+
   boolean readWrite() default true;
 
   boolean blocking() default false;
@@ -26,6 +26,7 @@ import java.util.Set;
 import java.util.StringTokenizer;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.Weigher;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.executor.ErrorContext;
@@ -142,6 +143,31 @@ public class MapperBuilderAssistant extends BaseBuilder {
       boolean readWrite,
       boolean blocking,
       Properties props) {
+    return useNewCache(typeClass, evictionClass, flushInterval, size, null, null, readWrite, blocking, props);
+  }
+
+  /**
+   * @param typeClass the cache implementation
+   * @param evictionClass the eviction decorator
+   * @param flushInterval the clear interval in milliseconds
+   * @param size the maximum number of entries
+   * @param maxBytes the maximum estimated memory of the entries in bytes
+   * @param weigher the weigher estimating the memory of the entries
+   * @param readWrite whether to cache serialized copies
+   * @param blocking whether to block concurrent misses of the same key
+   * @param props the cache properties
+   * @return The new cache
+   * @since 3.5.3
+   */
+  public Cache useNewCache(Class<? extends Cache> typeClass,
+      Class<? extends Cache> evictionClass,
+      Long flushInterval,
+      Integer size,
+      Long maxBytes,
+      Class<? extends Weigher> weigher,
+      boolean readWrite,
+      boolean blocking,
+      Properties props) {
     // 建造者模式
     Cache cache = new CacheBuilder(currentNamespace)
         // 建造基础节点
@@ -151,8 +177,11 @@ public class MapperBuilderAssistant extends BaseBuilder {
         // 配置了flushInterval属性才装饰ScheduledCache
         .clearInterval(flushInterval)
         .size(size)
+        .maxBytes(maxBytes)
+        .weigher(weigher)
         // 装饰SerializedCache
         .readWrite(readWrite)
+        .serializer(configuration.getCacheSerializer())
         // 装饰BlockingCache
         .blocking(blocking)
         .properties(props)
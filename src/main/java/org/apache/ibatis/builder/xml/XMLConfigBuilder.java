@@ -22,6 +22,7 @@ import javax.sql.DataSource;
 
 import org.apache.ibatis.builder.BaseBuilder;
 import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.cache.CacheSerializer;
 import org.apache.ibatis.datasource.DataSourceFactory;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.loader.ProxyFactory;
@@ -303,6 +304,18 @@ public class XMLConfigBuilder extends BaseBuilder {
     configuration.setCallSettersOnNulls(booleanValueOf(props.getProperty("callSettersOnNulls"), false));
     configuration.setUseActualParamName(booleanValueOf(props.getProperty("useActualParamName"), true));
     configuration.setReturnInstanceForEmptyRow(booleanValueOf(props.getProperty("returnInstanceForEmptyRow"), false));
+    configuration.setBatchGroupingEnabled(booleanValueOf(props.getProperty("batchGroupingEnabled"), false));
+    configuration.setBatchFlushRowsPerStatement(integerValueOf(props.getProperty("batchFlushRowsPerStatement"), null));
+    configuration.setBatchFlushPendingRows(integerValueOf(props.getProperty("batchFlushPendingRows"), null));
+    configuration.setBatchFlushPendingBytes(longValueOf(props.getProperty("batchFlushPendingBytes"), null));
+    configuration.setBatchInsertRewriteRows(integerValueOf(props.getProperty("batchInsertRewriteRows"), null));
+    configuration.setBatchFlushThreads(integerValueOf(props.getProperty("batchFlushThreads"), null));
+    configuration.setCursorPrefetchDepth(integerValueOf(props.getProperty("cursorPrefetchDepth"), null));
+    configuration.setLazyLoadBatchSize(integerValueOf(props.getProperty("lazyLoadBatchSize"), null));
+    configuration.setEagerLoadBatchSize(integerValueOf(props.getProperty("eagerLoadBatchSize"), null));
+    configuration.setRowMapperCompilationEnabled(booleanValueOf(props.getProperty("rowMapperCompilationEnabled"), false));
+    configuration.setResultSetShapeCacheEnabled(booleanValueOf(props.getProperty("resultSetShapeCacheEnabled"), false));
+    configuration.setCacheSerializer((CacheSerializer) createInstance(props.getProperty("cacheSerializer")));
     configuration.setLogPrefix(props.getProperty("logPrefix"));
     configuration.setConfigurationFactory(resolveClass(props.getProperty("configurationFactory")));
   }
@@ -23,6 +23,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 
@@ -34,6 +35,7 @@ import org.apache.ibatis.builder.IncompleteElementException;
 import org.apache.ibatis.builder.MapperBuilderAssistant;
 import org.apache.ibatis.builder.ResultMapResolver;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.Weigher;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.mapping.Discriminator;
@@ -250,11 +252,42 @@ public class XMLMapperBuilder extends BaseBuilder {
       Class<? extends Cache> evictionClass = typeAliasRegistry.resolveAlias(eviction);
       Long flushInterval = context.getLongAttribute("flushInterval");
       Integer size = context.getIntAttribute("size");
+      Long maxBytes = bytesValueOf(context.getStringAttribute("maxBytes"));
+      Class<? extends Weigher> weigherClass = resolveClass(context.getStringAttribute("weigher"));
       boolean readWrite = !context.getBooleanAttribute("readOnly", false);
       boolean blocking = context.getBooleanAttribute("blocking", false);
       Properties props = context.getChildrenAsProperties();
       // 构建缓存: 构造器模式
-      builderAssistant.useNewCache(typeClass, evictionClass, flushInterval, size, readWrite, blocking, props);
+      builderAssistant.useNewCache(typeClass, evictionClass, flushInterval, size, maxBytes, weigherClass, readWrite,
+          blocking, props);
+    }
+  }
+
+  /**
+   * Parses a size in bytes, optionally followed by a KB, MB or GB unit.
+   */
+  private Long bytesValueOf(String value) {
+    if (value == null) {
+      return null;
+    }
+    String number = value.trim().toUpperCase(Locale.ENGLISH);
+    long unit = 1;
+    if (number.endsWith("KB")) {
+      unit = 1024L;
+    } else if (number.endsWith("MB")) {
+      unit = 1024L * 1024;
+    } else if (number.endsWith("GB")) {
+      unit = 1024L * 1024 * 1024;
+    }
+    if (unit > 1) {
+      number = number.substring(0, number.length() - 2).trim();
+    } else if (number.endsWith("B")) {
+      number = number.substring(0, number.length() - 1).trim();
+    }
+    try {
+      return Long.parseLong(number) * unit;
+    } catch (NumberFormatException e) {
+      throw new BuilderException("Invalid cache maxBytes '" + value + "'. Expected a number of bytes, KB, MB or GB.", e);
     }
   }
 
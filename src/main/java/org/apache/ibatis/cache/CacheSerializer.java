@@ -0,0 +1,44 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * SPI turning cached values into bytes and back, for the caches storing copies of their values, e.g. a read-write
+ * {@link org.apache.ibatis.cache.decorators.SerializedCache}.
+ * <p>
+ * {@link #deserialize(byte[])} must return a new copy on each call. An implementation must have a public no-args
+ * constructor and be thread safe.
+ *
+ * @since 3.5.3
+ * @see org.apache.ibatis.session.Configuration#setCacheSerializer(CacheSerializer)
+ */
+public interface CacheSerializer {
+
+  /**
+   * @param value the value, which may be null
+   * @return The bytes of the value
+   * @throws CacheException if the value cannot be serialized
+   */
+  byte[] serialize(Object value);
+
+  /**
+   * @param bytes bytes returned by {@link #serialize(Object)}
+   * @return A copy of the value
+   * @throws CacheException if the bytes cannot be deserialized
+   */
+  Object deserialize(byte[] bytes);
+
+}
@@ -0,0 +1,36 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * SPI estimating the memory retained by a cache entry, for caches bounded by bytes rather than by entries.
+ * <p>
+ * An implementation must have a public no-args constructor and be thread safe.
+ *
+ * @since 3.5.3
+ * @see org.apache.ibatis.cache.decorators.WeightedCache
+ * @see org.apache.ibatis.cache.impl.ConcurrentCache#setMaxBytes(long)
+ */
+public interface Weigher {
+
+  /**
+   * @param key the key of the entry
+   * @param value the cached value, a {@code byte[]} for a read-write cache
+   * @return The estimated size of the entry in bytes, never negative
+   */
+  long weigh(Object key, Object value);
+
+}
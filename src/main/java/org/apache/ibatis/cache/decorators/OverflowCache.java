@@ -0,0 +1,255 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.ibatis.builder.InitializingObject;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * A two-tier cache: the decorated cache holds the most recently used entries, and the entries it evicts overflow to a
+ * log of memory-mapped segment files instead of being dropped.
+ * <p>
+ * The in-memory tier is bounded by {@code size} entries and evicts like an {@link LruCache}. A read missing it looks
+ * the key up on disk and moves the entry back into memory. The payloads of a {@link SerializedCache} are spilled as
+ * they are, other values and the keys are serialized, and entries that are not serializable are dropped. The disk tier
+ * is bounded by {@code diskSize} bytes split in segments of {@code segmentSize} bytes.
+ * <p>
+ * By default the segments are stored in a temporary directory of their own, created in {@code directory} or else in
+ * {@code java.io.tmpdir}, and deleted when the cache is closed or the JVM exits.
+ * <p>
+ * With {@code persistent} set, the segments are stored in {@code directory}, which is then required, and the disk tier
+ * is kept when the cache is created again, e.g. after a restart, which warms the cache up with the entries that
+ * overflowed before, and with the entries still in memory if the cache was closed by {@link #close()}. MyBatis itself
+ * never closes a cache, so for a cache configured in a mapper only the entries that overflowed survive; the memory
+ * tier is written out only by an application that builds and closes the cache itself. The disk tier is also cleared
+ * with the cache, i.e. by the next statement flushing it, so the entries it keeps are only as fresh as the database
+ * at the time they were cached. The segments are locked while the cache is open, so two caches, in the same or in
+ * different JVMs, fail to open the same persistent files.
+ * <p>
+ * Like the other eviction decorators it is not thread safe, and it is configured with
+ * {@code <cache eviction="OVERFLOW">}.
+ *
+ * @since 3.5.3
+ */
+public class OverflowCache implements Cache, InitializingObject {
+
+  private static final Log log = LogFactory.getLog(OverflowCache.class);
+
+  private final Cache delegate;
+  private Map<Object, Object> keyMap;
+  private Object eldestKey;
+  private String directory;
+  private long diskSize = 256L * 1024 * 1024;
+  private int segmentSize = 16 * 1024 * 1024;
+  private boolean persistent;
+  private SegmentLog disk;
+  private File temporaryDirectory;
+
+  public OverflowCache(Cache delegate) {
+    this.delegate = delegate;
+    setSize(1024);
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    int size = delegate.getSize();
+    for (Object key : disk().keys()) {
+      if (!keyMap.containsKey(key)) {
+        size++;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * @param size the maximum number of entries in memory
+   */
+  public void setSize(final int size) {
+    keyMap = new LinkedHashMap<Object, Object>(size, .75F, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+        boolean tooBig = size() > size;
+        if (tooBig) {
+          eldestKey = eldest.getKey();
+        }
+        return tooBig;
+      }
+    };
+  }
+
+  /**
+   * @param directory the directory of the segments of a persistent cache, or the parent of the temporary directory
+   *          of the segments of a cache that is not persistent
+   */
+  public void setDirectory(String directory) {
+    this.directory = directory;
+  }
+
+  public void setDiskSize(long diskSize) {
+    this.diskSize = diskSize;
+  }
+
+  public void setSegmentSize(int segmentSize) {
+    this.segmentSize = segmentSize;
+  }
+
+  public void setPersistent(boolean persistent) {
+    this.persistent = persistent;
+  }
+
+  @Override
+  public void initialize() {
+    if (persistent && directory == null) {
+      throw new CacheException("The persistent overflow cache " + getId() + " requires a directory.");
+    }
+    String name = getId().replaceAll("[^\\w.-]", "_");
+    try {
+      File files = persistent ? new File(directory) : createTemporaryDirectory(name);
+      disk = new SegmentLog(files, name, (int) Math.max(2, diskSize / segmentSize), segmentSize, persistent,
+          SerializedCache::deserialize);
+    } catch (IOException e) {
+      deleteTemporaryDirectory();
+      throw new CacheException("Could not open the overflow files of cache " + getId() + ". Cause: " + e, e);
+    }
+  }
+
+  /**
+   * Releases the files of the disk tier, and deletes them unless the cache is persistent. A persistent cache first
+   * writes the entries of the memory tier to disk, the least recently used first, so that they survive as well. The
+   * disk tier is opened again if the cache is used afterwards.
+   */
+  public void close() {
+    if (disk != null) {
+      if (persistent) {
+        for (Object key : keyMap.keySet()) {
+          spill(key, delegate.getObject(key));
+        }
+      }
+      disk.close();
+      disk = null;
+    }
+    deleteTemporaryDirectory();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    delegate.putObject(key, value);
+    disk().remove(key);
+    cycleKeyList(key);
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    keyMap.get(key); // touch
+    Object value = delegate.getObject(key);
+    if (value != null) {
+      return value;
+    }
+    SegmentLog.Location location = disk().find(key);
+    if (location == null) {
+      return null;
+    }
+    byte[] bytes = disk.readValue(location);
+    value = location.getKind() == SegmentLog.PAYLOAD ? bytes : SerializedCache.deserialize(bytes);
+    // the record stays on disk, it does not need to be written again when the entry is evicted unchanged
+    delegate.putObject(key, value);
+    cycleKeyList(key);
+    return value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    disk().remove(key);
+    keyMap.remove(key);
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+    keyMap.clear();
+    disk().clear();
+  }
+
+  private void cycleKeyList(Object key) {
+    keyMap.put(key, key);
+    if (eldestKey != null) {
+      Object value = delegate.getObject(eldestKey);
+      delegate.removeObject(eldestKey);
+      spill(eldestKey, value);
+      eldestKey = null;
+    }
+  }
+
+  private void spill(Object key, Object value) {
+    if (value == null || disk.contains(key) || !(key instanceof Serializable)) {
+      return;
+    }
+    try {
+      if (value instanceof byte[]) {
+        disk.write(key, SerializedCache.serialize((Serializable) key), SegmentLog.PAYLOAD, (byte[]) value);
+      } else if (value instanceof Serializable) {
+        disk.write(key, SerializedCache.serialize((Serializable) key), SegmentLog.OBJECT,
+            SerializedCache.serialize((Serializable) value));
+      }
+    } catch (CacheException e) {
+      log.debug("Dropping an entry of cache " + getId() + " that could not be serialized: " + e.getMessage());
+    }
+  }
+
+  private File createTemporaryDirectory(String name) throws IOException {
+    Path parent = Paths.get(directory == null ? System.getProperty("java.io.tmpdir") : directory);
+    Files.createDirectories(parent);
+    temporaryDirectory = Files.createTempDirectory(parent, "mybatis-cache-" + name + "-").toFile();
+    // registered before the segments, so that it is deleted after them
+    temporaryDirectory.deleteOnExit();
+    return temporaryDirectory;
+  }
+
+  private void deleteTemporaryDirectory() {
+    if (temporaryDirectory != null) {
+      temporaryDirectory.delete();
+      temporaryDirectory = null;
+    }
+  }
+
+  private SegmentLog disk() {
+    if (disk == null) {
+      initialize();
+    }
+    return disk;
+  }
+
+}
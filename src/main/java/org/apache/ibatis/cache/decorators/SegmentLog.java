@@ -0,0 +1,341 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A log of records appended to a ring of memory-mapped segment files, with an index of the latest record of each key.
+ * <p>
+ * A segment starts with its sequence number, 0 when it is unused, followed by records made of the length of the key,
+ * the length of the value, the kind of the value, the key and the value, and ends with a zero key length. When the log
+ * reaches the oldest segment again, the segment is compacted: its live records are moved to the head of the log if
+ * they fill at most half of it, and evicted otherwise. A persistent log also appends a tombstone record for each
+ * removed key, so that its index can be rebuilt by replaying the segments in sequence order.
+ * <p>
+ * The segment files are locked while the log is open, so that they are never shared by two logs, in this or another
+ * JVM. The files of a log that is not persistent are deleted when it is closed, or else when the JVM exits.
+ * <p>
+ * It is not thread safe.
+ *
+ * @since 3.5.3
+ * @see OverflowCache
+ */
+class SegmentLog {
+
+  static final byte TOMBSTONE = 0;
+  static final byte PAYLOAD = 1;
+  static final byte OBJECT = 2;
+
+  private static final int SEGMENT_HEADER = 8;
+  private static final int RECORD_HEADER = 9;
+  private static final int END_MARKER = 4;
+
+  private final File[] files;
+  private final FileChannel[] channels;
+  private final MappedByteBuffer[] segments;
+  private final long[] sequences;
+  private final int[] liveBytes;
+  private final int segmentSize;
+  private final boolean persistent;
+  private final Map<Object, Location> index = new HashMap<>();
+  private int current = -1;
+  private int position;
+  private long lastSequence;
+
+  SegmentLog(File directory, String name, int segmentCount, int segmentSize, boolean persistent,
+      Function<byte[], Object> keyReader) throws IOException {
+    this.files = new File[segmentCount];
+    this.channels = new FileChannel[segmentCount];
+    this.segments = new MappedByteBuffer[segmentCount];
+    this.sequences = new long[segmentCount];
+    this.liveBytes = new int[segmentCount];
+    this.segmentSize = segmentSize;
+    this.persistent = persistent;
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Could not create the cache directory " + directory);
+    }
+    try {
+      for (int i = 0; i < segmentCount; i++) {
+        files[i] = new File(directory, name + "." + i + ".log");
+        if (!persistent) {
+          files[i].deleteOnExit();
+        }
+        channels[i] = new RandomAccessFile(files[i], "rw").getChannel();
+        if (!tryLock(channels[i])) {
+          throw new IOException("The cache file " + files[i] + " is in use by another cache");
+        }
+        if (!persistent || channels[i].size() != segmentSize) {
+          channels[i].truncate(0);
+          channels[i].write(ByteBuffer.allocate(1), segmentSize - 1);
+        }
+        segments[i] = channels[i].map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+      }
+    } catch (IOException | RuntimeException e) {
+      close();
+      throw e;
+    }
+    if (persistent) {
+      recover(keyReader);
+    }
+  }
+
+  int size() {
+    return index.size();
+  }
+
+  Set<Object> keys() {
+    return index.keySet();
+  }
+
+  boolean contains(Object key) {
+    return index.containsKey(key);
+  }
+
+  Location find(Object key) {
+    return index.get(key);
+  }
+
+  byte[] readValue(Location location) {
+    return read(location.segment, location.offset + RECORD_HEADER + location.keyLength, location.valueLength);
+  }
+
+  /**
+   * Appends a record for the key, replacing the previous one.
+   *
+   * @return false if the record is larger than a segment
+   */
+  boolean write(Object key, byte[] keyBytes, byte kind, byte[] value) {
+    if (SEGMENT_HEADER + RECORD_HEADER + keyBytes.length + value.length + END_MARKER > segmentSize) {
+      remove(key);
+      return false;
+    }
+    release(index.remove(key));
+    index.put(key, append(keyBytes, kind, value));
+    return true;
+  }
+
+  void remove(Object key) {
+    Location location = index.remove(key);
+    if (location != null) {
+      release(location);
+      if (persistent) {
+        append(read(location.segment, location.offset + RECORD_HEADER, location.keyLength), TOMBSTONE, new byte[0]);
+      }
+    }
+  }
+
+  void clear() {
+    for (int i = 0; i < segments.length; i++) {
+      if (sequences[i] != 0) {
+        sequences[i] = 0;
+        segments[i].putLong(0, 0);
+      }
+      liveBytes[i] = 0;
+    }
+    index.clear();
+    current = -1;
+  }
+
+  /**
+   * Releases the segment files, and deletes them unless the log is persistent. The log must not be used afterwards.
+   */
+  void close() {
+    closeChannels();
+    if (!persistent) {
+      for (File file : files) {
+        if (file != null) {
+          file.delete();
+        }
+      }
+    }
+  }
+
+  private void closeChannels() {
+    for (FileChannel channel : channels) {
+      if (channel != null) {
+        try {
+          // closing the channel releases its lock, the mapped segment stays valid
+          channel.close();
+        } catch (IOException e) {
+          // ignore
+        }
+      }
+    }
+  }
+
+  private static boolean tryLock(FileChannel channel) throws IOException {
+    try {
+      FileLock lock = channel.tryLock();
+      return lock != null;
+    } catch (OverlappingFileLockException e) {
+      // locked by another log of this JVM
+      return false;
+    }
+  }
+
+  private Location append(byte[] keyBytes, byte kind, byte[] value) {
+    int length = RECORD_HEADER + keyBytes.length + value.length;
+    int rolls = 0;
+    while (current < 0 || position + length + END_MARKER > segmentSize) {
+      // after a whole turn, stop keeping live records so that a large record always finds room
+      roll(rolls++ >= segments.length);
+    }
+    ByteBuffer buffer = segments[current].duplicate();
+    buffer.position(position);
+    buffer.putInt(keyBytes.length).putInt(value.length).put(kind).put(keyBytes).put(value).putInt(0);
+    Location location = new Location(current, position, keyBytes.length, value.length, kind);
+    position += length;
+    if (kind != TOMBSTONE) {
+      liveBytes[current] += length;
+    }
+    return location;
+  }
+
+  private void roll(boolean evictAll) {
+    int next = (current + 1) % segments.length;
+    List<Object[]> kept = new ArrayList<>();
+    if (sequences[next] != 0) {
+      boolean keep = !evictAll && liveBytes[next] <= segmentSize / 2;
+      Iterator<Map.Entry<Object, Location>> entries = index.entrySet().iterator();
+      while (entries.hasNext()) {
+        Map.Entry<Object, Location> entry = entries.next();
+        Location location = entry.getValue();
+        if (location.segment == next) {
+          if (keep) {
+            kept.add(new Object[] { entry.getKey(), read(next, location.offset + RECORD_HEADER, location.keyLength),
+                location.kind, readValue(location) });
+          }
+          entries.remove();
+        }
+      }
+    }
+    sequences[next] = ++lastSequence;
+    segments[next].putLong(0, lastSequence);
+    segments[next].putInt(SEGMENT_HEADER, 0);
+    liveBytes[next] = 0;
+    current = next;
+    position = SEGMENT_HEADER;
+    for (Object[] record : kept) {
+      index.put(record[0], append((byte[]) record[1], (Byte) record[2], (byte[]) record[3]));
+    }
+  }
+
+  private void release(Location location) {
+    if (location != null) {
+      liveBytes[location.segment] -= location.length();
+    }
+  }
+
+  private byte[] read(int segment, int offset, int length) {
+    byte[] bytes = new byte[length];
+    ByteBuffer buffer = segments[segment].duplicate();
+    buffer.position(offset);
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  private void recover(Function<byte[], Object> keyReader) {
+    Integer[] order = new Integer[segments.length];
+    for (int i = 0; i < segments.length; i++) {
+      order[i] = i;
+      sequences[i] = segments[i].getLong(0);
+      lastSequence = Math.max(lastSequence, sequences[i]);
+    }
+    Arrays.sort(order, Comparator.comparingLong(i -> sequences[i]));
+    for (int segment : order) {
+      if (sequences[segment] == 0) {
+        continue;
+      }
+      current = segment;
+      position = replay(segment, keyReader);
+    }
+  }
+
+  private int replay(int segment, Function<byte[], Object> keyReader) {
+    MappedByteBuffer buffer = segments[segment];
+    int offset = SEGMENT_HEADER;
+    while (offset + RECORD_HEADER <= segmentSize) {
+      int keyLength = buffer.getInt(offset);
+      int valueLength = buffer.getInt(offset + 4);
+      byte kind = buffer.get(offset + 8);
+      if (keyLength <= 0 || valueLength < 0 || offset + RECORD_HEADER + keyLength + valueLength > segmentSize) {
+        break;
+      }
+      Object key;
+      try {
+        key = keyReader.apply(read(segment, offset + RECORD_HEADER, keyLength));
+      } catch (RuntimeException e) {
+        // a record torn by a crash, the rest of the segment is lost
+        break;
+      }
+      Location location = new Location(segment, offset, keyLength, valueLength, kind);
+      release(index.remove(key));
+      if (kind != TOMBSTONE) {
+        index.put(key, location);
+        liveBytes[segment] += location.length();
+      }
+      offset += location.length();
+    }
+    if (offset + END_MARKER <= segmentSize) {
+      buffer.putInt(offset, 0);
+    }
+    return offset;
+  }
+
+  static class Location {
+
+    private final int segment;
+    private final int offset;
+    private final int keyLength;
+    private final int valueLength;
+    private final byte kind;
+
+    Location(int segment, int offset, int keyLength, int valueLength, byte kind) {
+      this.segment = segment;
+      this.offset = offset;
+      this.keyLength = keyLength;
+      this.valueLength = valueLength;
+      this.kind = kind;
+    }
+
+    byte getKind() {
+      return kind;
+    }
+
+    int length() {
+      return RECORD_HEADER + keyLength + valueLength;
+    }
+
+  }
+
+}
@@ -0,0 +1,115 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.Weigher;
+import org.apache.ibatis.cache.impl.EstimatingWeigher;
+
+/**
+ * Bounds the estimated memory of a cache, evicting the least recently used entries once their total weight exceeds
+ * the byte budget.
+ * <p>
+ * The entries are weighed by a {@link Weigher} when they are put. Like the other eviction decorators it is not thread
+ * safe, and it must decorate the cache storing the entries directly, so that it sees the entries evicted by other
+ * decorators.
+ *
+ * @since 3.5.3
+ */
+public class WeightedCache implements Cache {
+
+  private final Cache delegate;
+  private final Map<Object, Long> weights = new LinkedHashMap<>(16, .75F, true);
+  private Weigher weigher = new EstimatingWeigher();
+  private long maxBytes = Long.MAX_VALUE;
+  private long totalBytes;
+
+  public WeightedCache(Cache delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  public void setMaxBytes(long maxBytes) {
+    this.maxBytes = maxBytes;
+    evict();
+  }
+
+  public void setWeigher(Weigher weigher) {
+    this.weigher = weigher;
+  }
+
+  /**
+   * @return The estimated size of the entries in bytes
+   */
+  public long getTotalBytes() {
+    return totalBytes;
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    delegate.putObject(key, value);
+    long weight = weigher.weigh(key, value);
+    Long previous = weights.put(key, weight);
+    totalBytes += previous == null ? weight : weight - previous;
+    evict();
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    weights.get(key); // touch
+    return delegate.getObject(key);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    Long weight = weights.remove(key);
+    if (weight != null) {
+      totalBytes -= weight;
+    }
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+    weights.clear();
+    totalBytes = 0;
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<Object, Long>> eldest = weights.entrySet().iterator();
+    while (totalBytes > maxBytes && eldest.hasNext()) {
+      Map.Entry<Object, Long> entry = eldest.next();
+      eldest.remove();
+      totalBytes -= entry.getValue();
+      delegate.removeObject(entry.getKey());
+    }
+  }
+
+}
@@ -0,0 +1,711 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.io.Externalizable;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheSerializer;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.reflection.DefaultReflectorFactory;
+import org.apache.ibatis.reflection.ReflectorFactory;
+import org.apache.ibatis.reflection.factory.DefaultObjectFactory;
+import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.reflection.invoker.GetFieldInvoker;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.reflection.invoker.SetFieldInvoker;
+
+/**
+ * A compact binary {@link CacheSerializer} for the usual shapes of query results.
+ * <p>
+ * It encodes the JDK value types (strings, boxed primitives, {@link BigDecimal}, {@link BigInteger}, dates and times,
+ * {@link UUID}, enums and arrays), the {@link ArrayList}, {@link LinkedList}, {@link HashSet}, {@link LinkedHashSet},
+ * {@link HashMap} and {@link LinkedHashMap} collections, and serializable beans. A bean is written field by field,
+ * like Java serialization does, and is created again by its default constructor, as found by its
+ * {@link org.apache.ibatis.reflection.Reflector}. Shared and cyclic references are kept.
+ * <p>
+ * Any other value, e.g. a bean with custom serialization methods or a lazy loading proxy, is written with Java
+ * serialization, and references from inside it to the rest of the value are not shared. Bytes written by
+ * {@link JavaCacheSerializer} are also read.
+ *
+ * @since 3.5.3
+ */
+public class BinaryCacheSerializer implements CacheSerializer {
+
+  private static final byte FORMAT = 0x4D;
+
+  private static final byte NULL = 0;
+  private static final byte REFERENCE = 1;
+  private static final byte STRING = 2;
+  private static final byte INTEGER = 3;
+  private static final byte LONG = 4;
+  private static final byte DOUBLE = 5;
+  private static final byte FLOAT = 6;
+  private static final byte SHORT = 7;
+  private static final byte BYTE = 8;
+  private static final byte TRUE = 9;
+  private static final byte FALSE = 10;
+  private static final byte CHARACTER = 11;
+  private static final byte BIG_DECIMAL = 12;
+  private static final byte BIG_INTEGER = 13;
+  private static final byte DATE = 14;
+  private static final byte SQL_DATE = 15;
+  private static final byte SQL_TIME = 16;
+  private static final byte SQL_TIMESTAMP = 17;
+  private static final byte LOCAL_DATE = 18;
+  private static final byte LOCAL_TIME = 19;
+  private static final byte LOCAL_DATE_TIME = 20;
+  private static final byte INSTANT = 21;
+  private static final byte UUID_VALUE = 22;
+  private static final byte ENUM = 23;
+  private static final byte BYTE_ARRAY = 24;
+  private static final byte ARRAY = 25;
+  private static final byte ARRAY_LIST = 26;
+  private static final byte LINKED_LIST = 27;
+  private static final byte HASH_SET = 28;
+  private static final byte LINKED_HASH_SET = 29;
+  private static final byte HASH_MAP = 30;
+  private static final byte LINKED_HASH_MAP = 31;
+  private static final byte BEAN = 32;
+  private static final byte SERIALIZED = 33;
+
+  private static final BeanType NOT_A_BEAN = new BeanType(null, new BeanField[0]);
+
+  private final CacheSerializer fallback = new JavaCacheSerializer();
+  private final ReflectorFactory reflectorFactory = new DefaultReflectorFactory();
+  private final ObjectFactory objectFactory = new DefaultObjectFactory();
+  private final Map<Class<?>, BeanType> beanTypes = new ConcurrentHashMap<>();
+
+  @Override
+  public byte[] serialize(Object value) {
+    Output out = new Output();
+    out.writeByte(FORMAT);
+    new Writer(out).write(value);
+    return out.toByteArray();
+  }
+
+  @Override
+  public Object deserialize(byte[] bytes) {
+    if (bytes.length == 0 || bytes[0] != FORMAT) {
+      return fallback.deserialize(bytes);
+    }
+    try {
+      return new Reader(new Input(bytes, 1)).read();
+    } catch (ClassNotFoundException | RuntimeException e) {
+      throw new CacheException("Error deserializing object.  Cause: " + e, e);
+    }
+  }
+
+  /**
+   * @return The fields of the type when it can be written as a bean, or {@link #NOT_A_BEAN}
+   */
+  private BeanType beanType(Class<?> type) {
+    return beanTypes.computeIfAbsent(type, this::resolveBeanType);
+  }
+
+  private BeanType resolveBeanType(Class<?> type) {
+    if (!Serializable.class.isAssignableFrom(type) || Externalizable.class.isAssignableFrom(type)
+        || type.isInterface() || Modifier.isAbstract(type.getModifiers()) || type.getName().startsWith("java.")
+        || !reflectorFactory.findForClass(type).hasDefaultConstructor()) {
+      return NOT_A_BEAN;
+    }
+    List<BeanField> fields = new ArrayList<>();
+    for (Class<?> clazz = type; clazz != null && Serializable.class.isAssignableFrom(clazz); clazz = clazz.getSuperclass()) {
+      if (hasSerializationMethods(clazz)) {
+        return NOT_A_BEAN;
+      }
+      for (Field field : clazz.getDeclaredFields()) {
+        int modifiers = field.getModifiers();
+        if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
+          fields.add(new BeanField(clazz.getName() + "." + field.getName(), field));
+        }
+      }
+    }
+    // a stable order, getDeclaredFields() has none
+    fields.sort(Comparator.comparing(field -> field.name));
+    return new BeanType(type, fields.toArray(new BeanField[0]));
+  }
+
+  private static boolean hasSerializationMethods(Class<?> clazz) {
+    for (String method : Arrays.asList("writeObject", "readObject", "readObjectNoData", "writeReplace", "readResolve")) {
+      for (Method declared : clazz.getDeclaredMethods()) {
+        if (declared.getName().equals(method)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private class Writer {
+
+    private final Output out;
+    private final Map<Object, Integer> objects = new IdentityHashMap<>();
+    private final Map<Class<?>, Integer> classes = new HashMap<>();
+    private final Map<Class<?>, Integer> beans = new HashMap<>();
+
+    Writer(Output out) {
+      this.out = out;
+    }
+
+    void write(Object value) {
+      if (value == null) {
+        out.writeByte(NULL);
+        return;
+      }
+      Class<?> type = value.getClass();
+      if (type == String.class) {
+        out.writeByte(STRING);
+        out.writeString((String) value);
+      } else if (type == Integer.class) {
+        out.writeByte(INTEGER);
+        out.writeVarLong((Integer) value);
+      } else if (type == Long.class) {
+        out.writeByte(LONG);
+        out.writeVarLong((Long) value);
+      } else if (type == Double.class) {
+        out.writeByte(DOUBLE);
+        out.writeLong(Double.doubleToRawLongBits((Double) value));
+      } else if (type == Boolean.class) {
+        out.writeByte((Boolean) value ? TRUE : FALSE);
+      } else if (type == BigDecimal.class) {
+        BigDecimal decimal = (BigDecimal) value;
+        out.writeByte(BIG_DECIMAL);
+        out.writeVarLong(decimal.scale());
+        out.writeBytes(decimal.unscaledValue().toByteArray());
+      } else if (type == Float.class) {
+        out.writeByte(FLOAT);
+        out.writeVarLong(Float.floatToRawIntBits((Float) value));
+      } else if (type == Short.class) {
+        out.writeByte(SHORT);
+        out.writeVarLong((Short) value);
+      } else if (type == Byte.class) {
+        out.writeByte(BYTE);
+        out.writeByte((Byte) value);
+      } else if (type == Character.class) {
+        out.writeByte(CHARACTER);
+        out.writeVarLong((Character) value);
+      } else if (type == BigInteger.class) {
+        out.writeByte(BIG_INTEGER);
+        out.writeBytes(((BigInteger) value).toByteArray());
+      } else if (type == Date.class || type == java.sql.Date.class || type == Time.class) {
+        out.writeByte(type == Date.class ? DATE : type == Time.class ? SQL_TIME : SQL_DATE);
+        out.writeVarLong(((Date) value).getTime());
+      } else if (type == Timestamp.class) {
+        out.writeByte(SQL_TIMESTAMP);
+        out.writeVarLong(((Timestamp) value).getTime());
+        out.writeVarLong(((Timestamp) value).getNanos());
+      } else if (type == LocalDate.class) {
+        out.writeByte(LOCAL_DATE);
+        out.writeVarLong(((LocalDate) value).toEpochDay());
+      } else if (type == LocalTime.class) {
+        out.writeByte(LOCAL_TIME);
+        out.writeVarLong(((LocalTime) value).toNanoOfDay());
+      } else if (type == LocalDateTime.class) {
+        out.writeByte(LOCAL_DATE_TIME);
+        out.writeVarLong(((LocalDateTime) value).toLocalDate().toEpochDay());
+        out.writeVarLong(((LocalDateTime) value).toLocalTime().toNanoOfDay());
+      } else if (type == Instant.class) {
+        out.writeByte(INSTANT);
+        out.writeVarLong(((Instant) value).getEpochSecond());
+        out.writeVarLong(((Instant) value).getNano());
+      } else if (type == UUID.class) {
+        out.writeByte(UUID_VALUE);
+        out.writeLong(((UUID) value).getMostSignificantBits());
+        out.writeLong(((UUID) value).getLeastSignificantBits());
+      } else if (value instanceof Enum) {
+        out.writeByte(ENUM);
+        writeClass(((Enum<?>) value).getDeclaringClass());
+        out.writeString(((Enum<?>) value).name());
+      } else {
+        writeObject(value, type);
+      }
+    }
+
+    private void writeObject(Object value, Class<?> type) {
+      Integer index = objects.get(value);
+      if (index != null) {
+        out.writeByte(REFERENCE);
+        out.writeVarLong(index);
+        return;
+      }
+      objects.put(value, objects.size());
+      if (type == byte[].class) {
+        out.writeByte(BYTE_ARRAY);
+        out.writeBytes((byte[]) value);
+      } else if (type.isArray()) {
+        out.writeByte(ARRAY);
+        writeClass(type.getComponentType());
+        int length = Array.getLength(value);
+        out.writeVarLong(length);
+        for (int i = 0; i < length; i++) {
+          write(Array.get(value, i));
+        }
+      } else if (type == ArrayList.class || type == LinkedList.class || type == HashSet.class
+          || type == LinkedHashSet.class) {
+        Collection<?> collection = (Collection<?>) value;
+        out.writeByte(type == ArrayList.class ? ARRAY_LIST
+            : type == LinkedList.class ? LINKED_LIST : type == HashSet.class ? HASH_SET : LINKED_HASH_SET);
+        out.writeVarLong(collection.size());
+        for (Object element : collection) {
+          write(element);
+        }
+      } else if (type == HashMap.class || type == LinkedHashMap.class) {
+        Map<?, ?> map = (Map<?, ?>) value;
+        out.writeByte(type == HashMap.class ? HASH_MAP : LINKED_HASH_MAP);
+        out.writeVarLong(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+          write(entry.getKey());
+          write(entry.getValue());
+        }
+      } else {
+        BeanType beanType = beanType(type);
+        if (beanType == NOT_A_BEAN) {
+          out.writeByte(SERIALIZED);
+          out.writeBytes(fallback.serialize(value));
+        } else {
+          out.writeByte(BEAN);
+          writeBean(value, beanType);
+        }
+      }
+    }
+
+    private void writeBean(Object bean, BeanType beanType) {
+      Integer index = beans.get(beanType.type);
+      if (index != null) {
+        out.writeVarLong(index);
+      } else {
+        beans.put(beanType.type, beans.size());
+        out.writeVarLong(-1);
+        out.writeString(beanType.type.getName());
+        out.writeVarLong(beanType.fields.length);
+        for (BeanField field : beanType.fields) {
+          out.writeString(field.name);
+        }
+      }
+      for (BeanField field : beanType.fields) {
+        write(field.get(bean));
+      }
+    }
+
+    private void writeClass(Class<?> type) {
+      Integer index = classes.get(type);
+      if (index != null) {
+        out.writeVarLong(index);
+      } else {
+        classes.put(type, classes.size());
+        out.writeVarLong(-1);
+        out.writeString(type.getName());
+      }
+    }
+
+  }
+
+  private class Reader {
+
+    private final Input in;
+    private final List<Object> objects = new ArrayList<>();
+    private final List<Class<?>> classes = new ArrayList<>();
+    private final List<Class<?>> beanClasses = new ArrayList<>();
+    private final List<BeanField[]> beanFields = new ArrayList<>();
+
+    Reader(Input in) {
+      this.in = in;
+    }
+
+    Object read() throws ClassNotFoundException {
+      byte tag = in.readByte();
+      switch (tag) {
+        case NULL:
+          return null;
+        case REFERENCE:
+          return objects.get((int) in.readVarLong());
+        case STRING:
+          return in.readString();
+        case INTEGER:
+          return (int) in.readVarLong();
+        case LONG:
+          return in.readVarLong();
+        case DOUBLE:
+          return Double.longBitsToDouble(in.readLong());
+        case FLOAT:
+          return Float.intBitsToFloat((int) in.readVarLong());
+        case SHORT:
+          return (short) in.readVarLong();
+        case BYTE:
+          return in.readByte();
+        case TRUE:
+          return Boolean.TRUE;
+        case FALSE:
+          return Boolean.FALSE;
+        case CHARACTER:
+          return (char) in.readVarLong();
+        case BIG_DECIMAL:
+          int scale = (int) in.readVarLong();
+          return new BigDecimal(new BigInteger(in.readBytes()), scale);
+        case BIG_INTEGER:
+          return new BigInteger(in.readBytes());
+        case DATE:
+          return new Date(in.readVarLong());
+        case SQL_DATE:
+          return new java.sql.Date(in.readVarLong());
+        case SQL_TIME:
+          return new Time(in.readVarLong());
+        case SQL_TIMESTAMP:
+          Timestamp timestamp = new Timestamp(in.readVarLong());
+          timestamp.setNanos((int) in.readVarLong());
+          return timestamp;
+        case LOCAL_DATE:
+          return LocalDate.ofEpochDay(in.readVarLong());
+        case LOCAL_TIME:
+          return LocalTime.ofNanoOfDay(in.readVarLong());
+        case LOCAL_DATE_TIME:
+          LocalDate date = LocalDate.ofEpochDay(in.readVarLong());
+          return LocalDateTime.of(date, LocalTime.ofNanoOfDay(in.readVarLong()));
+        case INSTANT:
+          long seconds = in.readVarLong();
+          return Instant.ofEpochSecond(seconds, in.readVarLong());
+        case UUID_VALUE:
+          long mostSignificantBits = in.readLong();
+          return new UUID(mostSignificantBits, in.readLong());
+        case ENUM:
+          return readEnum();
+        default:
+          return readObject(tag);
+      }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Object readEnum() throws ClassNotFoundException {
+      Class enumType = readClass();
+      return Enum.valueOf(enumType, in.readString());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object readObject(byte tag) throws ClassNotFoundException {
+      switch (tag) {
+        case BYTE_ARRAY:
+          return register(in.readBytes());
+        case ARRAY:
+          Class<?> componentType = readClass();
+          int length = (int) in.readVarLong();
+          Object array = register(Array.newInstance(componentType, length));
+          for (int i = 0; i < length; i++) {
+            Array.set(array, i, read());
+          }
+          return array;
+        case ARRAY_LIST:
+        case LINKED_LIST:
+        case HASH_SET:
+        case LINKED_HASH_SET:
+          int size = (int) in.readVarLong();
+          Collection<Object> collection = tag == ARRAY_LIST ? new ArrayList<>(size)
+              : tag == LINKED_LIST ? new LinkedList<>()
+              : tag == HASH_SET ? new HashSet<>(capacity(size)) : new LinkedHashSet<>(capacity(size));
+          register(collection);
+          for (int i = 0; i < size; i++) {
+            collection.add(read());
+          }
+          return collection;
+        case HASH_MAP:
+        case LINKED_HASH_MAP:
+          int entries = (int) in.readVarLong();
+          Map<Object, Object> map = tag == HASH_MAP ? new HashMap<>(capacity(entries))
+              : new LinkedHashMap<>(capacity(entries));
+          register(map);
+          for (int i = 0; i < entries; i++) {
+            Object key = read();
+            map.put(key, read());
+          }
+          return map;
+        case BEAN:
+          return readBean();
+        case SERIALIZED:
+          return register(fallback.deserialize(in.readBytes()));
+        default:
+          throw new CacheException("Unknown tag " + tag + " in cached value.");
+      }
+    }
+
+    private Object readBean() throws ClassNotFoundException {
+      int index = (int) in.readVarLong();
+      Class<?> type;
+      BeanField[] fields;
+      if (index >= 0) {
+        type = beanClasses.get(index);
+        fields = beanFields.get(index);
+      } else {
+        type = Resources.classForName(in.readString());
+        BeanType beanType = beanType(type);
+        int count = (int) in.readVarLong();
+        fields = new BeanField[count];
+        for (int i = 0; i < count; i++) {
+          // a field missing from the current version of the class is skipped
+          fields[i] = beanType.field(in.readString());
+        }
+        beanClasses.add(type);
+        beanFields.add(fields);
+      }
+      Object bean = register(objectFactory.create(type));
+      for (BeanField field : fields) {
+        Object value = read();
+        if (field != null) {
+          field.set(bean, value);
+        }
+      }
+      return bean;
+    }
+
+    private Class<?> readClass() throws ClassNotFoundException {
+      int index = (int) in.readVarLong();
+      if (index >= 0) {
+        return classes.get(index);
+      }
+      String name = in.readString();
+      Class<?> type = primitiveType(name);
+      if (type == null) {
+        type = Resources.classForName(name);
+      }
+      classes.add(type);
+      return type;
+    }
+
+    private <T> T register(T object) {
+      objects.add(object);
+      return object;
+    }
+
+  }
+
+  private static int capacity(int size) {
+    return (int) (size / .75F) + 1;
+  }
+
+  private static Class<?> primitiveType(String name) {
+    for (Class<?> type : Arrays.asList(int.class, long.class, double.class, float.class, short.class, byte.class,
+        boolean.class, char.class)) {
+      if (type.getName().equals(name)) {
+        return type;
+      }
+    }
+    return null;
+  }
+
+  private static class BeanType {
+
+    private final Class<?> type;
+    private final BeanField[] fields;
+
+    BeanType(Class<?> type, BeanField[] fields) {
+      this.type = type;
+      this.fields = fields;
+    }
+
+    BeanField field(String name) {
+      for (BeanField field : fields) {
+        if (field.name.equals(name)) {
+          return field;
+        }
+      }
+      return null;
+    }
+
+  }
+
+  private static class BeanField {
+
+    private final String name;
+    private final Invoker getter;
+    private final Invoker setter;
+
+    BeanField(String name, Field field) {
+      this.name = name;
+      this.getter = new GetFieldInvoker(field);
+      this.setter = new SetFieldInvoker(field);
+    }
+
+    Object get(Object bean) {
+      try {
+        return getter.invoke(bean, null);
+      } catch (ReflectiveOperationException e) {
+        throw new CacheException("Could not read field " + name + ". Cause: " + e, e);
+      }
+    }
+
+    void set(Object bean, Object value) {
+      try {
+        setter.invoke(bean, new Object[] { value });
+      } catch (ReflectiveOperationException e) {
+        throw new CacheException("Could not write field " + name + ". Cause: " + e, e);
+      }
+    }
+
+  }
+
+  private static class Output {
+
+    private byte[] buffer = new byte[256];
+    private int position;
+
+    void writeByte(int value) {
+      ensureCapacity(1);
+      buffer[position++] = (byte) value;
+    }
+
+    void writeLong(long value) {
+      ensureCapacity(8);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        buffer[position++] = (byte) (value >>> shift);
+      }
+    }
+
+    /**
+     * Writes a zig-zag encoded variable length integer, from 1 byte for small values up to 10.
+     */
+    void writeVarLong(long value) {
+      ensureCapacity(10);
+      long zigZag = (value << 1) ^ (value >> 63);
+      while ((zigZag & ~0x7FL) != 0) {
+        buffer[position++] = (byte) ((zigZag & 0x7F) | 0x80);
+        zigZag >>>= 7;
+      }
+      buffer[position++] = (byte) zigZag;
+    }
+
+    void writeBytes(byte[] bytes) {
+      writeVarLong(bytes.length);
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buffer, position, bytes.length);
+      position += bytes.length;
+    }
+
+    /**
+     * Writes a string as Latin-1 when it only has ASCII characters, which is flagged by the lowest bit of its length.
+     */
+    void writeString(String value) {
+      int length = value.length();
+      for (int i = 0; i < length; i++) {
+        if (value.charAt(i) >= 0x80) {
+          byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+          writeVarLong((long) bytes.length << 1 | 1);
+          ensureCapacity(bytes.length);
+          System.arraycopy(bytes, 0, buffer, position, bytes.length);
+          position += bytes.length;
+          return;
+        }
+      }
+      writeVarLong((long) length << 1);
+      ensureCapacity(length);
+      for (int i = 0; i < length; i++) {
+        buffer[position++] = (byte) value.charAt(i);
+      }
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, position);
+    }
+
+    private void ensureCapacity(int length) {
+      if (position + length > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+      }
+    }
+
+  }
+
+  private static class Input {
+
+    private final byte[] buffer;
+    private int position;
+
+    Input(byte[] buffer, int position) {
+      this.buffer = buffer;
+      this.position = position;
+    }
+
+    byte readByte() {
+      return buffer[position++];
+    }
+
+    long readLong() {
+      long value = 0;
+      for (int i = 0; i < 8; i++) {
+        value = value << 8 | (buffer[position++] & 0xFF);
+      }
+      return value;
+    }
+
+    long readVarLong() {
+      long zigZag = 0;
+      for (int shift = 0; ; shift += 7) {
+        byte b = buffer[position++];
+        zigZag |= (long) (b & 0x7F) << shift;
+        if (b >= 0) {
+          break;
+        }
+      }
+      return (zigZag >>> 1) ^ -(zigZag & 1);
+    }
+
+    byte[] readBytes() {
+      int length = (int) readVarLong();
+      byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+      position += length;
+      return bytes;
+    }
+
+    @SuppressWarnings("deprecation")
+    String readString() {
+      long header = readVarLong();
+      int length = (int) (header >>> 1);
+      String value = (header & 1) == 0 ? new String(buffer, 0, position, length)
+          : new String(buffer, position, length, StandardCharsets.UTF_8);
+      position += length;
+      return value;
+    }
+
+  }
+
+}
@@ -0,0 +1,218 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.Weigher;
+
+/**
+ * A thread safe, size bounded cache that does not lock on reads.
+ * <p>
+ * The entries are kept in a {@link ConcurrentHashMap} and evicted by the CLOCK (second chance) algorithm, which
+ * approximates LRU: a read only marks its entry as referenced, and a put that makes the cache exceed its size walks
+ * the insertion ordered queue of entries, giving referenced entries a second chance and evicting the first
+ * unreferenced one. Only the thread evicting holds a lock, and puts that find it held leave the eviction to it.
+ * <p>
+ * Besides the number of entries, the cache can be bounded by their estimated memory, see {@link #setMaxBytes(long)}.
+ * <p>
+ * It is the default namespace cache of the {@link org.apache.ibatis.mapping.CacheBuilder}, which then no longer
+ * needs to wrap the cache in a {@link org.apache.ibatis.cache.decorators.SynchronizedCache}.
+ *
+ * @since 3.5.3
+ */
+public class ConcurrentCache implements Cache {
+
+  private final String id;
+  private final ConcurrentHashMap<Object, Entry> cache = new ConcurrentHashMap<>();
+  private final ConcurrentLinkedQueue<Entry> clock = new ConcurrentLinkedQueue<>();
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  // entries of the queue that were replaced or removed from the map since the last sweep
+  private final AtomicInteger staleEntries = new AtomicInteger();
+  private final AtomicLong totalBytes = new AtomicLong();
+  private volatile int size = 1024;
+  private volatile long maxBytes = Long.MAX_VALUE;
+  private volatile Weigher weigher;
+
+  public ConcurrentCache(String id) {
+    this.id = id;
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public int getSize() {
+    return cache.size();
+  }
+
+  public void setSize(int size) {
+    this.size = size;
+    evict();
+  }
+
+  /**
+   * Bounds the estimated memory of the entries, as weighed by the {@link #setWeigher(Weigher) weigher}.
+   *
+   * @param maxBytes the maximum total weight of the entries in bytes
+   */
+  public void setMaxBytes(long maxBytes) {
+    if (weigher == null) {
+      weigher = new EstimatingWeigher();
+    }
+    this.maxBytes = maxBytes;
+    evict();
+  }
+
+  public void setWeigher(Weigher weigher) {
+    this.weigher = weigher;
+  }
+
+  /**
+   * @return The estimated size of the entries in bytes, 0 if no weigher is set
+   */
+  public long getTotalBytes() {
+    return totalBytes.get();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    Weigher currentWeigher = weigher;
+    Entry entry = new Entry(key, value, currentWeigher == null ? 0 : currentWeigher.weigh(key, value));
+    totalBytes.addAndGet(entry.weight);
+    Entry previous = cache.put(key, entry);
+    if (previous != null) {
+      totalBytes.addAndGet(-previous.weight);
+      staleEntries.incrementAndGet();
+    }
+    clock.offer(entry);
+    evict();
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Entry entry = cache.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (!entry.referenced) {
+      entry.referenced = true;
+    }
+    return entry.value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    Entry entry = cache.remove(key);
+    if (entry == null) {
+      return null;
+    }
+    totalBytes.addAndGet(-entry.weight);
+    staleEntries.incrementAndGet();
+    evict();
+    return entry.value;
+  }
+
+  @Override
+  public void clear() {
+    // the queue is cleared first, so an entry put concurrently is never left in the map only
+    clock.clear();
+    cache.clear();
+    staleEntries.set(0);
+    totalBytes.set(0);
+  }
+
+  private void evict() {
+    if (cache.size() <= size && totalBytes.get() <= maxBytes && staleEntries.get() <= cache.size()) {
+      return;
+    }
+    if (!evictionLock.tryLock()) {
+      return;
+    }
+    try {
+      while (cache.size() > size || totalBytes.get() > maxBytes) {
+        Entry entry = clock.poll();
+        if (entry == null) {
+          break;
+        }
+        if (cache.get(entry.key) != entry) {
+          staleEntries.decrementAndGet();
+        } else if (entry.referenced) {
+          entry.referenced = false;
+          clock.offer(entry);
+        } else if (cache.remove(entry.key, entry)) {
+          totalBytes.addAndGet(-entry.weight);
+        }
+      }
+      if (staleEntries.get() > cache.size()) {
+        staleEntries.set(0);
+        clock.removeIf(entry -> cache.get(entry.key) != entry);
+        // also corrects the drift a clear concurrent with puts may leave
+        totalBytes.set(cache.values().stream().mapToLong(entry -> entry.weight).sum());
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Cache)) {
+      return false;
+    }
+
+    Cache otherCache = (Cache) o;
+    return getId().equals(otherCache.getId());
+  }
+
+  @Override
+  public int hashCode() {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    return getId().hashCode();
+  }
+
+  private static class Entry {
+
+    private final Object key;
+    private final Object value;
+    private final long weight;
+    private volatile boolean referenced;
+
+    Entry(Object key, Object value, long weight) {
+      this.key = key;
+      this.value = value;
+      this.weight = weight;
+    }
+
+  }
+
+}
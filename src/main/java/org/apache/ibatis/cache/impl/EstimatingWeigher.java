@@ -0,0 +1,147 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ibatis.cache.Weigher;
+
+/**
+ * A cheap {@link Weigher} estimating the shallow layout of the cached value, the default one.
+ * <p>
+ * A {@code byte[]}, i.e. the value of a read-write cache, weighs its length. Other values are walked to a limited
+ * depth: the size of collections, maps and arrays is extrapolated from a few of their elements, and the fields of
+ * other objects are read directly, so that no getter, e.g. of a lazy loading proxy, is called.
+ *
+ * @since 3.5.3
+ */
+public class EstimatingWeigher implements Weigher {
+
+  private static final int ENTRY_OVERHEAD = 64;
+  private static final int OBJECT_HEADER = 16;
+  private static final int REFERENCE = 8;
+  private static final int MAX_DEPTH = 3;
+  private static final int SAMPLES = 4;
+
+  private final Map<Class<?>, Field[]> fields = new ConcurrentHashMap<>();
+
+  @Override
+  public long weigh(Object key, Object value) {
+    return ENTRY_OVERHEAD + estimate(value, 0);
+  }
+
+  private long estimate(Object value, int depth) {
+    if (value == null) {
+      return 0;
+    }
+    Class<?> type = value.getClass();
+    if (type.isArray()) {
+      return estimateArray(value, type.getComponentType(), depth);
+    } else if (value instanceof CharSequence) {
+      return OBJECT_HEADER + 24 + 2L * ((CharSequence) value).length();
+    } else if (value instanceof Number || value instanceof Boolean || value instanceof Character
+        || value instanceof Enum || value instanceof Date || value instanceof Temporal || value instanceof UUID) {
+      return 2 * OBJECT_HEADER;
+    } else if (depth >= MAX_DEPTH) {
+      return OBJECT_HEADER;
+    } else if (value instanceof Collection) {
+      Collection<?> collection = (Collection<?>) value;
+      return 40 + collection.size() * (REFERENCE + sample(collection.iterator(), collection.size(), depth));
+    } else if (value instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) value;
+      long entries = 40 + map.size() * (40 + sample(map.keySet().iterator(), map.size(), depth));
+      return entries + map.size() * sample(map.values().iterator(), map.size(), depth);
+    }
+    long size = OBJECT_HEADER;
+    for (Field field : fieldsOf(type)) {
+      size += REFERENCE;
+      if (field != null && !field.getType().isPrimitive()) {
+        try {
+          size += estimate(field.get(value), depth + 1);
+        } catch (IllegalAccessException e) {
+          // count the reference only
+        }
+      }
+    }
+    return size;
+  }
+
+  private long estimateArray(Object array, Class<?> componentType, int depth) {
+    int length = Array.getLength(array);
+    if (componentType == byte.class || componentType == boolean.class) {
+      return OBJECT_HEADER + length;
+    } else if (componentType == char.class || componentType == short.class) {
+      return OBJECT_HEADER + 2L * length;
+    } else if (componentType == int.class || componentType == float.class) {
+      return OBJECT_HEADER + 4L * length;
+    } else if (componentType.isPrimitive()) {
+      return OBJECT_HEADER + 8L * length;
+    } else if (depth >= MAX_DEPTH) {
+      return OBJECT_HEADER + (long) REFERENCE * length;
+    }
+    List<Object> elements = new ArrayList<>(Math.min(length, SAMPLES));
+    for (int i = 0; i < length && i < SAMPLES; i++) {
+      elements.add(Array.get(array, i));
+    }
+    return OBJECT_HEADER + length * (REFERENCE + sample(elements.iterator(), length, depth));
+  }
+
+  /**
+   * @return The average estimated size of the first elements
+   */
+  private long sample(Iterator<?> elements, int size, int depth) {
+    long total = 0;
+    int count = 0;
+    while (count < SAMPLES && count < size && elements.hasNext()) {
+      total += estimate(elements.next(), depth + 1);
+      count++;
+    }
+    return count == 0 ? 0 : total / count;
+  }
+
+  private Field[] fieldsOf(Class<?> type) {
+    return fields.computeIfAbsent(type, k -> {
+      List<Field> accessible = new ArrayList<>();
+      for (Class<?> clazz = k; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+        for (Field field : clazz.getDeclaredFields()) {
+          if (Modifier.isStatic(field.getModifiers())) {
+            continue;
+          }
+          try {
+            field.setAccessible(true);
+            accessible.add(field);
+          } catch (RuntimeException e) {
+            // not open to reflection, e.g. a JDK internal field, weigh as a primitive
+            accessible.add(null);
+          }
+        }
+      }
+      return accessible.toArray(new Field[0]);
+    });
+  }
+
+}
@@ -0,0 +1,321 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+import org.apache.ibatis.builder.InitializingObject;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheSerializer;
+import org.apache.ibatis.cache.decorators.SerializedCache;
+
+/**
+ * A cache keeping serialized copies of its values outside of the Java heap, in direct {@link ByteBuffer} slabs.
+ * <p>
+ * Like a {@link SerializedCache}, every read returns a new copy of the cached value, and values must be
+ * serializable. The entries are appended to the slabs one after the other; when they are all full, the oldest slab is
+ * recycled and the entries it holds are evicted. Only the keys and the position of the entries stay on the heap.
+ * Reads take no lock, and are validated against the recycling of their slab instead.
+ * <p>
+ * It is configured with {@code <cache type="OFF_HEAP">} and the {@code capacity} and {@code slabSize} properties, in
+ * bytes. An entry larger than a slab is not cached. The direct memory of the JVM, bounded by
+ * {@code -XX:MaxDirectMemorySize}, must be large enough for the capacity.
+ *
+ * @since 3.5.3
+ */
+public class OffHeapCache implements Cache, InitializingObject {
+
+  private final String id;
+  private final ConcurrentHashMap<Object, Location> index = new ConcurrentHashMap<>();
+  private final ReentrantLock writeLock = new ReentrantLock();
+  private final AtomicLong usedBytes = new AtomicLong();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private long capacity = 64L * 1024 * 1024;
+  private CacheSerializer serializer = new JavaCacheSerializer();
+  private int slabSize = 4 * 1024 * 1024;
+  private volatile Slab[] slabs;
+  private int currentSlab;
+
+  public OffHeapCache(String id) {
+    this.id = id;
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * @param capacity the total size of the slabs in bytes, 64MB by default
+   */
+  public void setCapacity(long capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * @param serializer the serializer of the values, Java serialization by default
+   */
+  public void setSerializer(CacheSerializer serializer) {
+    this.serializer = serializer;
+  }
+
+  /**
+   * @param slabSize the size of a slab in bytes, which is also the maximum size of an entry, 4MB by default
+   */
+  public void setSlabSize(int slabSize) {
+    this.slabSize = slabSize;
+  }
+
+  @Override
+  public void initialize() {
+    if (slabSize <= 0 || capacity < slabSize) {
+      throw new CacheException("The capacity of the off-heap cache " + id + " (" + capacity
+          + ") must be at least the size of one slab (" + slabSize + ").");
+    }
+    writeLock.lock();
+    try {
+      // at least two slabs, so that recycling one does not empty the cache
+      Slab[] newSlabs = new Slab[(int) Math.max(2, capacity / slabSize)];
+      for (int i = 0; i < newSlabs.length; i++) {
+        newSlabs[i] = new Slab(ByteBuffer.allocateDirect(slabSize));
+      }
+      index.clear();
+      usedBytes.set(0);
+      currentSlab = 0;
+      slabs = newSlabs;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public int getSize() {
+    return index.size();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    if (value == null) {
+      removeObject(key);
+      return;
+    }
+    if (!(value instanceof Serializable)) {
+      throw new CacheException("SharedCache failed to make a copy of a non-serializable object: " + value);
+    }
+    byte[] bytes = serializer.serialize(value);
+    writeLock.lock();
+    try {
+      if (slabs == null) {
+        initialize();
+      }
+      if (bytes.length > slabSize) {
+        release(index.remove(key));
+        return;
+      }
+      Slab slab = slabs[currentSlab];
+      if (slab.position + bytes.length > slabSize) {
+        currentSlab = (currentSlab + 1) % slabs.length;
+        slab = slabs[currentSlab];
+        recycle(slab);
+      }
+      Location location = new Location(slab, slab.generation, slab.position, bytes.length);
+      slab.writer.position(slab.position);
+      slab.writer.put(bytes);
+      slab.position += bytes.length;
+      slab.keys.add(key);
+      usedBytes.addAndGet(bytes.length);
+      release(index.put(key, location));
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Location location = index.get(key);
+    byte[] bytes = location == null ? null : location.read();
+    if (bytes == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return serializer.deserialize(bytes);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    release(index.remove(key));
+    return null;
+  }
+
+  @Override
+  public void clear() {
+    writeLock.lock();
+    try {
+      if (slabs != null) {
+        for (Slab slab : slabs) {
+          slab.reset();
+        }
+      }
+      index.clear();
+      usedBytes.set(0);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /**
+   * @return The number of entries evicted to reuse their slab
+   */
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  /**
+   * @return The size of the serialized values of the entries in bytes
+   */
+  public long getUsedBytes() {
+    return usedBytes.get();
+  }
+
+  public long getCapacity() {
+    return capacity;
+  }
+
+  private void recycle(Slab slab) {
+    for (Object key : slab.keys) {
+      Location location = index.get(key);
+      if (location != null && location.slab == slab && index.remove(key, location)) {
+        usedBytes.addAndGet(-location.length);
+        evictions.increment();
+      }
+    }
+    slab.reset();
+  }
+
+  private void release(Location location) {
+    if (location != null) {
+      usedBytes.addAndGet(-location.length);
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Cache)) {
+      return false;
+    }
+
+    Cache otherCache = (Cache) o;
+    return getId().equals(otherCache.getId());
+  }
+
+  @Override
+  public int hashCode() {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    return getId().hashCode();
+  }
+
+  /**
+   * A direct buffer filled from its start, with the keys of the entries written to it.
+   * The generation changes each time the buffer is reused, under the write lock of the stamped lock,
+   * so that a read can tell whether the buffer was reused while it copied an entry.
+   */
+  private static class Slab {
+
+    private final ByteBuffer buffer;
+    private final ByteBuffer writer;
+    private final StampedLock lock = new StampedLock();
+    private final List<Object> keys = new ArrayList<>();
+    private volatile int generation;
+    private int position;
+
+    Slab(ByteBuffer buffer) {
+      this.buffer = buffer;
+      this.writer = buffer.duplicate();
+    }
+
+    void reset() {
+      long stamp = lock.writeLock();
+      try {
+        generation++;
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+      position = 0;
+      keys.clear();
+    }
+
+  }
+
+  private static class Location {
+
+    private final Slab slab;
+    private final int generation;
+    private final int offset;
+    private final int length;
+
+    Location(Slab slab, int generation, int offset, int length) {
+      this.slab = slab;
+      this.generation = generation;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    /**
+     * @return A copy of the entry, or null if its slab was reused
+     */
+    byte[] read() {
+      long stamp = slab.lock.tryOptimisticRead();
+      if (stamp == 0 || slab.generation != generation) {
+        return null;
+      }
+      byte[] bytes = new byte[length];
+      ByteBuffer reader = slab.buffer.duplicate();
+      reader.position(offset);
+      reader.get(bytes);
+      return slab.lock.validate(stamp) ? bytes : null;
+    }
+
+  }
+
+}
@@ -0,0 +1,74 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+import org.apache.ibatis.cache.Weigher;
+
+/**
+ * A {@link Weigher} taking the length of the serialized value as its size, i.e. the length of the payload a
+ * {@link org.apache.ibatis.cache.decorators.SerializedCache} stores.
+ * <p>
+ * The values of a read-write cache are already serialized and weigh nothing more to compute. Other values are
+ * serialized without being copied, and the ones that are not serializable are estimated by an
+ * {@link EstimatingWeigher}.
+ *
+ * @since 3.5.3
+ */
+public class SerializedWeigher implements Weigher {
+
+  private static final int ENTRY_OVERHEAD = 64;
+
+  private final Weigher fallback = new EstimatingWeigher();
+
+  @Override
+  public long weigh(Object key, Object value) {
+    if (value instanceof byte[]) {
+      return ENTRY_OVERHEAD + ((byte[]) value).length;
+    } else if (value instanceof Serializable) {
+      CountingOutputStream out = new CountingOutputStream();
+      try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+        oos.writeObject(value);
+        oos.flush();
+        return ENTRY_OVERHEAD + out.count;
+      } catch (IOException e) {
+        // a non-serializable member
+      }
+    }
+    return fallback.weigh(key, value);
+  }
+
+  private static class CountingOutputStream extends OutputStream {
+
+    private long count;
+
+    @Override
+    public void write(int b) {
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      count += len;
+    }
+
+  }
+
+}
@@ -0,0 +1,205 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cursor;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ibatis.cursor.defaults.DefaultCursor;
+
+/**
+ * Publishes the objects of a {@link Cursor} with back pressure: a row is only mapped once the subscriber requested it.
+ * <p>
+ * The {@link Subscriber} and {@link Subscription} interfaces have the same methods as their
+ * {@code java.util.concurrent.Flow} counterparts, which MyBatis cannot use while it supports Java 8,
+ * so adapting them to Flow or to Reactive Streams only takes delegating each method.
+ * <p>
+ * Rows are mapped on the thread calling {@link Subscription#request(long)}, so requests must not overlap other uses
+ * of the session that opened the cursor. Cancelling the subscription closes the cursor, and so the result set and
+ * the statement. When the cursor is a {@link DefaultCursor}, the fetch size of the driver follows the demand.
+ *
+ * @param <T> the type of the objects
+ * @since 3.5.3
+ */
+public class CursorPublisher<T> {
+
+  private static final int MAX_FETCH_SIZE = 1000;
+
+  private final Cursor<T> cursor;
+  private final AtomicBoolean subscribed = new AtomicBoolean();
+
+  public CursorPublisher(Cursor<T> cursor) {
+    this.cursor = cursor;
+  }
+
+  /**
+   * Subscribes to the cursor. A cursor can only be read once, so only one subscriber is accepted.
+   *
+   * @param subscriber the subscriber
+   */
+  public void subscribe(Subscriber<? super T> subscriber) {
+    if (!subscribed.compareAndSet(false, true)) {
+      subscriber.onSubscribe(new Subscription() {
+        @Override
+        public void request(long n) {
+          // nothing to publish
+        }
+
+        @Override
+        public void cancel() {
+          // nothing to release
+        }
+      });
+      subscriber.onError(new IllegalStateException("A CursorPublisher only accepts one subscriber"));
+      return;
+    }
+    CursorSubscription<T> subscription = new CursorSubscription<>(cursor, subscriber);
+    subscriber.onSubscribe(subscription);
+  }
+
+  /**
+   * Receives the objects of a {@link CursorPublisher}, like {@code java.util.concurrent.Flow.Subscriber}.
+   *
+   * @param <T> the type of the objects
+   */
+  public interface Subscriber<T> {
+
+    void onSubscribe(Subscription subscription);
+
+    void onNext(T item);
+
+    void onError(Throwable throwable);
+
+    void onComplete();
+
+  }
+
+  /**
+   * Links a {@link CursorPublisher} and a {@link Subscriber}, like {@code java.util.concurrent.Flow.Subscription}.
+   */
+  public interface Subscription {
+
+    void request(long n);
+
+    void cancel();
+
+  }
+
+  private static class CursorSubscription<T> implements Subscription {
+
+    private final Cursor<T> cursor;
+    private final Subscriber<? super T> subscriber;
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger pendingSignals = new AtomicInteger();
+    private volatile boolean cancelled;
+    private Throwable invalidRequest;
+    private Iterator<T> iterator;
+    private boolean done;
+
+    CursorSubscription(Cursor<T> cursor, Subscriber<? super T> subscriber) {
+      this.cursor = cursor;
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        invalidRequest = new IllegalArgumentException("The number of requested objects must be positive, but was " + n);
+        cancelled = true;
+      } else {
+        demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+      }
+      drain();
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      drain();
+    }
+
+    /**
+     * Emits the requested objects. Only one thread drains at a time; signals arriving meanwhile make it loop again.
+     */
+    private void drain() {
+      if (pendingSignals.getAndIncrement() != 0) {
+        return;
+      }
+      int missed = 1;
+      do {
+        if (!done) {
+          emit();
+        }
+        missed = pendingSignals.addAndGet(-missed);
+      } while (missed != 0);
+    }
+
+    private void emit() {
+      try {
+        if (iterator == null) {
+          iterator = cursor.iterator();
+        }
+        long requested = demand.get();
+        while (!cancelled && requested > 0) {
+          adjustFetchSize(requested);
+          long emitted = 0;
+          while (!cancelled && emitted < requested) {
+            if (!iterator.hasNext()) {
+              finish(null);
+              return;
+            }
+            subscriber.onNext(iterator.next());
+            emitted++;
+          }
+          requested = demand.addAndGet(-emitted);
+        }
+        if (cancelled) {
+          finish(invalidRequest);
+        } else if (cursor.isConsumed()) {
+          finish(null);
+        }
+      } catch (RuntimeException e) {
+        finish(e);
+      }
+    }
+
+    private void adjustFetchSize(long requested) {
+      if (cursor instanceof DefaultCursor) {
+        ((DefaultCursor<T>) cursor).setFetchSize((int) Math.min(requested, MAX_FETCH_SIZE));
+      }
+    }
+
+    private void finish(Throwable error) {
+      done = true;
+      try {
+        cursor.close();
+      } catch (Exception e) {
+        if (error == null && !cancelled) {
+          error = e;
+        }
+      }
+      if (error != null) {
+        subscriber.onError(error);
+      } else if (!cancelled) {
+        subscriber.onComplete();
+      }
+    }
+
+  }
+
+}
@@ -121,6 +121,23 @@ public class DefaultCursor<T> implements Cursor<T> {
     }
   }
 
+  /**
+   * Gives the driver a hint of the number of rows to fetch in the next round trip.
+   *
+   * @param rows the number of rows, 0 to let the driver decide
+   * @since 3.5.3
+   */
+  public void setFetchSize(int rows) {
+    if (isClosed()) {
+      return;
+    }
+    try {
+      rsw.getResultSet().setFetchSize(rows);
+    } catch (SQLException e) {
+      // only a hint
+    }
+  }
+
   protected T fetchNextUsingRowBound() {
     T result = fetchNextObjectFromDatabase();
     while (result != null && indexWithRowBound < rowBounds.getOffset()) {
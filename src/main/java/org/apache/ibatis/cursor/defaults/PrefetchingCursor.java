@@ -0,0 +1,225 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cursor.defaults;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.exceptions.PersistenceException;
+
+/**
+ * A cursor mapping the rows of another cursor ahead of the consumer, on a background thread,
+ * into a buffer of a fixed number of objects.
+ * <p>
+ * Once the iterator is retrieved, the background thread owns the result set and the session that opened the cursor:
+ * the session must not be used again until the cursor is consumed or closed. The background thread closes the
+ * underlying cursor once it stops, and closing this cursor stops it and waits for it. A failure while mapping a row is thrown by the iterator
+ * once the objects mapped before it are consumed.
+ * This implementation is not thread safe, apart from {@link #close()}: closing the cursor from another thread ends
+ * the iteration of a consumer waiting for the next object.
+ *
+ * @since 3.5.3
+ */
+public class PrefetchingCursor<T> implements Cursor<T> {
+
+  private static final Object END = new Object();
+  private static final Object CLOSED = new Object();
+
+  private final Cursor<T> delegate;
+  private final Executor executor;
+  private final BlockingQueue<Object> buffer;
+  private final CountDownLatch finished = new CountDownLatch(1);
+  private final int firstIndex;
+  private final PrefetchingIterator iterator = new PrefetchingIterator();
+  private volatile boolean closed;
+  private boolean started;
+  private boolean consumed;
+  private int consumedCount;
+
+  public PrefetchingCursor(Cursor<T> delegate, int depth, Executor executor) {
+    this.delegate = delegate;
+    this.executor = executor;
+    this.buffer = new ArrayBlockingQueue<>(Math.max(1, depth));
+    this.firstIndex = delegate.getCurrentIndex() + 1;
+  }
+
+  @Override
+  public boolean isOpen() {
+    return started && !closed && !consumed;
+  }
+
+  @Override
+  public boolean isConsumed() {
+    return consumed;
+  }
+
+  @Override
+  public int getCurrentIndex() {
+    return firstIndex + consumedCount - 1;
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    if (started) {
+      throw new IllegalStateException("Cannot open more than one iterator on a Cursor");
+    }
+    if (closed) {
+      throw new IllegalStateException("A Cursor is already closed.");
+    }
+    Iterator<T> rows = delegate.iterator();
+    started = true;
+    executor.execute(() -> prefetch(rows));
+    return iterator;
+  }
+
+  private void prefetch(Iterator<T> rows) {
+    try {
+      while (!closed && rows.hasNext()) {
+        buffer.put(rows.next());
+      }
+      if (!closed) {
+        buffer.put(END);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      buffer.clear();
+      buffer.offer(new Failure(e));
+    } catch (RuntimeException e) {
+      putFailure(e);
+    } finally {
+      try {
+        delegate.close();
+      } catch (IOException e) {
+        // ignore
+      } finally {
+        finished.countDown();
+      }
+    }
+  }
+
+  private void putFailure(RuntimeException e) {
+    if (closed) {
+      return;
+    }
+    try {
+      buffer.put(new Failure(e));
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      buffer.clear();
+      buffer.offer(new Failure(e));
+    }
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (!started) {
+      try {
+        delegate.close();
+      } catch (IOException e) {
+        // ignore
+      }
+      return;
+    }
+    // unblocks the background thread if the buffer is full
+    buffer.clear();
+    try {
+      finished.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    buffer.clear();
+    // wakes up a consumer blocked on the buffer in another thread
+    buffer.offer(CLOSED);
+  }
+
+  private static class Failure {
+
+    private final Exception cause;
+
+    Failure(Exception cause) {
+      this.cause = cause;
+    }
+
+  }
+
+  private class PrefetchingIterator implements Iterator<T> {
+
+    private Object next;
+
+    @Override
+    public boolean hasNext() {
+      if (next == null && !consumed && !closed) {
+        next = take();
+      }
+      if (next == END) {
+        consumed = true;
+        next = null;
+        return false;
+      }
+      if (next == CLOSED) {
+        next = null;
+        return false;
+      }
+      if (next instanceof Failure) {
+        Exception cause = ((Failure) next).cause;
+        next = null;
+        consumed = true;
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        throw new PersistenceException("Error prefetching cursor rows. Cause: " + cause, cause);
+      }
+      return next != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      T object = (T) next;
+      next = null;
+      consumedCount++;
+      return object;
+    }
+
+    private Object take() {
+      try {
+        return buffer.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new PersistenceException("Interrupted while waiting for the next cursor row.", e);
+      }
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("Cannot remove element from Cursor");
+    }
+  }
+
+}
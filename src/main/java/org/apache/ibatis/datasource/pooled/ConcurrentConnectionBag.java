@@ -0,0 +1,317 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Holder of the connections of a {@link PooledDataSource} that never takes the pool lock.
+ * <p>
+ * Idle connections sit in a deque, and the connection last returned by a thread is also remembered in a
+ * thread-local slot, so a thread usually gets its own connection back. The deque, the idle count and the queue of
+ * waiting threads are guarded by a lock of the bag, held for a few field updates and never while calling the driver,
+ * so the idle count always matches the deque. A returned connection is handed to the thread that has waited the
+ * longest before it is made idle, so new callers never take it ahead of the waiters. A waiter is also woken up when
+ * a connection leaves the pool, as it may then open a new one.
+ */
+class ConcurrentConnectionBag {
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Deque<PooledConnection> idleConnections = new ArrayDeque<>();
+  private final Deque<Waiter> waiters = new ArrayDeque<>();
+  private final Set<PooledConnection> borrowedConnections = ConcurrentHashMap.newKeySet();
+  private final ThreadLocal<WeakReference<PooledConnection>> lastReturned = new ThreadLocal<>();
+  private final AtomicInteger totalCount = new AtomicInteger();
+  private volatile int idleCount;
+
+  /**
+   * Takes an idle connection without waiting.
+   *
+   * @return A reserved connection, or null if none is idle
+   */
+  public PooledConnection poll() {
+    WeakReference<PooledConnection> reference = lastReturned.get();
+    lastReturned.remove();
+    PooledConnection preferred = reference == null ? null : reference.get();
+    lock.lock();
+    try {
+      return takeIdle(preferred);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Takes an idle connection, waiting up to the given time for one to be handed over.
+   *
+   * @param timeout the maximum time to wait
+   * @param unit the unit of the timeout
+   * @return A reserved connection, or null if none was handed over in time or if a connection left the pool,
+   *         which makes room for a new one
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public PooledConnection poll(long timeout, TimeUnit unit) throws InterruptedException {
+    PooledConnection conn = poll();
+    if (conn != null) {
+      return conn;
+    }
+    long remaining = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      conn = takeIdle(null);
+      if (conn != null || remaining <= 0) {
+        return conn;
+      }
+      Waiter waiter = new Waiter(lock.newCondition());
+      waiters.addLast(waiter);
+      try {
+        while (waiter.conn == null && !waiter.woken && remaining > 0) {
+          remaining = waiter.condition.awaitNanos(remaining);
+        }
+      } catch (InterruptedException e) {
+        if (waiter.conn == null) {
+          throw e;
+        }
+        // handed over just before the interrupt, keep the connection
+        Thread.currentThread().interrupt();
+      } finally {
+        waiters.remove(waiter);
+      }
+      return waiter.conn;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Takes the given idle connection, unless it has been checked out in the meantime.
+   *
+   * @param conn an idle connection
+   * @return True if the connection was taken
+   */
+  public boolean take(PooledConnection conn) {
+    lock.lock();
+    try {
+      if (idleConnections.remove(conn) && conn.reserve()) {
+        idleCount = idleConnections.size();
+        return true;
+      }
+      return false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private PooledConnection takeIdle(PooledConnection preferred) {
+    PooledConnection conn = null;
+    if (preferred != null && idleConnections.remove(preferred)) {
+      conn = preferred;
+    } else {
+      conn = idleConnections.pollFirst();
+    }
+    idleCount = idleConnections.size();
+    if (conn != null) {
+      // idle connections are never in use, only the holder of the lock can win this
+      conn.reserve();
+    }
+    return conn;
+  }
+
+  /**
+   * Hands a connection to the longest waiting thread, or makes it idle.
+   *
+   * @param conn the connection, not yet reserved
+   */
+  public void offer(PooledConnection conn) {
+    offer(conn, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Hands a connection to the longest waiting thread, or makes it idle if there are fewer idle connections than
+   * the given maximum.
+   *
+   * @param conn the connection, not yet reserved
+   * @param maximumIdle the maximum number of idle connections
+   * @return False if the connection was neither handed over nor made idle
+   */
+  public boolean offer(PooledConnection conn, int maximumIdle) {
+    lock.lock();
+    try {
+      Waiter waiter = waiters.pollFirst();
+      if (waiter != null) {
+        conn.reserve();
+        waiter.conn = conn;
+        waiter.condition.signal();
+        return true;
+      }
+      if (idleConnections.size() >= maximumIdle) {
+        return false;
+      }
+      idleConnections.addLast(conn);
+      idleCount = idleConnections.size();
+    } finally {
+      lock.unlock();
+    }
+    lastReturned.set(new WeakReference<>(conn));
+    return true;
+  }
+
+  /**
+   * Reserves room for a new physical connection.
+   *
+   * @param maximum the maximum number of connections in the pool
+   * @return True if a new connection may be opened
+   */
+  public boolean reserveNew(int maximum) {
+    while (true) {
+      int count = totalCount.get();
+      if (count >= maximum) {
+        return false;
+      }
+      if (totalCount.compareAndSet(count, count + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Forgets a physical connection, either because it could not be opened or because it left the pool, and wakes up
+   * the longest waiting thread, which may open a new connection in its place.
+   */
+  public void discard() {
+    totalCount.decrementAndGet();
+    lock.lock();
+    try {
+      Waiter waiter = waiters.pollFirst();
+      if (waiter != null) {
+        waiter.woken = true;
+        waiter.condition.signal();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void markBorrowed(PooledConnection conn) {
+    borrowedConnections.add(conn);
+  }
+
+  /**
+   * Takes a connection out of the borrowed set. The caller must have won {@link PooledConnection#retire()}.
+   *
+   * @param conn the connection
+   */
+  public void unmarkBorrowed(PooledConnection conn) {
+    borrowedConnections.remove(conn);
+  }
+
+  /**
+   * @return The borrowed connection that has been checked out for the longest time, or null if none
+   */
+  public PooledConnection findOldestBorrowed() {
+    PooledConnection oldest = null;
+    for (PooledConnection conn : borrowedConnections) {
+      if (oldest == null || conn.getCheckoutTimestamp() < oldest.getCheckoutTimestamp()) {
+        oldest = conn;
+      }
+    }
+    return oldest;
+  }
+
+  /**
+   * @return A snapshot of the idle connections, which may include connections that were checked out since
+   */
+  public List<PooledConnection> getIdleConnections() {
+    lock.lock();
+    try {
+      return new ArrayList<>(idleConnections);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return A snapshot of the borrowed connections
+   */
+  public List<PooledConnection> getBorrowedConnections() {
+    return new ArrayList<>(borrowedConnections);
+  }
+
+  /**
+   * Takes every idle connection out of the bag.
+   *
+   * @return The reserved idle connections
+   */
+  public List<PooledConnection> drainIdle() {
+    List<PooledConnection> drained = new ArrayList<>();
+    PooledConnection conn;
+    while ((conn = poll()) != null) {
+      drained.add(conn);
+    }
+    return drained;
+  }
+
+  /**
+   * Takes every borrowed connection out of the bag, retiring each of them.
+   *
+   * @return The retired connections
+   */
+  public List<PooledConnection> drainBorrowed() {
+    List<PooledConnection> drained = new ArrayList<>();
+    for (PooledConnection conn : borrowedConnections) {
+      if (conn.retire()) {
+        borrowedConnections.remove(conn);
+        drained.add(conn);
+      }
+    }
+    return drained;
+  }
+
+  public int getIdleCount() {
+    return idleCount;
+  }
+
+  public int getBorrowedCount() {
+    return borrowedConnections.size();
+  }
+
+  public int getTotalCount() {
+    return totalCount.get();
+  }
+
+  private static final class Waiter {
+
+    private final Condition condition;
+    private PooledConnection conn;
+    private boolean woken;
+
+    Waiter(Condition condition) {
+      this.condition = condition;
+    }
+
+  }
+
+}
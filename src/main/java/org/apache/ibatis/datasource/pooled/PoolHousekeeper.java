@@ -0,0 +1,92 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * Runs {@link PooledDataSource#housekeep()} and {@link PooledDataSource#detectLeaks()} periodically on a
+ * daemon thread.
+ * <p>
+ * Only a weak reference to the data source is kept, so an abandoned pool can still be collected;
+ * the thread stops by itself once that happens.
+ */
+class PoolHousekeeper {
+
+  private static final Log log = LogFactory.getLog(PoolHousekeeper.class);
+
+  private final WeakReference<PooledDataSource> dataSource;
+  private ScheduledExecutorService executor;
+
+  public PoolHousekeeper(PooledDataSource dataSource) {
+    this.dataSource = new WeakReference<>(dataSource);
+  }
+
+  /**
+   * (Re)starts the housekeeping thread.
+   *
+   * @param housekeepingPeriod the delay in milliseconds between two housekeeping runs, 0 or less disables them
+   * @param leakDetectionPeriod the delay in milliseconds between two leak detection runs, 0 or less disables them
+   */
+  public synchronized void schedule(long housekeepingPeriod, long leakDetectionPeriod) {
+    cancel();
+    if (housekeepingPeriod <= 0 && leakDetectionPeriod <= 0) {
+      return;
+    }
+    ScheduledExecutorService newExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "mybatis-pool-housekeeper");
+      thread.setDaemon(true);
+      return thread;
+    });
+    if (housekeepingPeriod > 0) {
+      schedule(newExecutor, housekeepingPeriod, PooledDataSource::housekeep);
+    }
+    if (leakDetectionPeriod > 0) {
+      schedule(newExecutor, leakDetectionPeriod, PooledDataSource::detectLeaks);
+    }
+    executor = newExecutor;
+  }
+
+  private void schedule(ScheduledExecutorService executor, long period, Consumer<PooledDataSource> task) {
+    executor.scheduleWithFixedDelay(() -> {
+      PooledDataSource ds = dataSource.get();
+      if (ds == null) {
+        executor.shutdown();
+        return;
+      }
+      try {
+        task.accept(ds);
+      } catch (RuntimeException e) {
+        log.warn("Pool housekeeping failed: " + e.getMessage());
+      }
+    }, period, period, TimeUnit.MILLISECONDS);
+  }
+
+  public synchronized void cancel() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+}
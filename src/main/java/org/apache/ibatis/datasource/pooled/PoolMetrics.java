@@ -0,0 +1,133 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+/**
+ * A point-in-time snapshot of the metrics of a {@link PooledDataSource}, taken without locking the pool.
+ * The gauges may therefore be slightly out of date with each other. All durations are in nanoseconds.
+ *
+ * @since 3.5.3
+ * @see PoolState#getMetrics()
+ */
+public class PoolMetrics {
+
+  private final int activeConnections;
+  private final int idleConnections;
+  private final int pendingRequests;
+  private final Latency checkoutWait;
+  private final Latency checkoutHold;
+  private final Latency connectionCreation;
+
+  public PoolMetrics(int activeConnections, int idleConnections, int pendingRequests, Latency checkoutWait,
+      Latency checkoutHold, Latency connectionCreation) {
+    this.activeConnections = activeConnections;
+    this.idleConnections = idleConnections;
+    this.pendingRequests = pendingRequests;
+    this.checkoutWait = checkoutWait;
+    this.checkoutHold = checkoutHold;
+    this.connectionCreation = connectionCreation;
+  }
+
+  public int getActiveConnections() {
+    return activeConnections;
+  }
+
+  public int getIdleConnections() {
+    return idleConnections;
+  }
+
+  /**
+   * @return The number of threads currently waiting for a connection
+   */
+  public int getPendingRequests() {
+    return pendingRequests;
+  }
+
+  /**
+   * @return The time between asking for a connection and getting it
+   */
+  public Latency getCheckoutWait() {
+    return checkoutWait;
+  }
+
+  /**
+   * @return The time a connection was held before being returned, with millisecond precision
+   */
+  public Latency getCheckoutHold() {
+    return checkoutHold;
+  }
+
+  /**
+   * @return The time it took to open a physical connection
+   */
+  public Latency getConnectionCreation() {
+    return connectionCreation;
+  }
+
+  @Override
+  public String toString() {
+    return "PoolMetrics [activeConnections=" + activeConnections + ", idleConnections=" + idleConnections
+        + ", pendingRequests=" + pendingRequests + ", checkoutWait=" + checkoutWait + ", checkoutHold=" + checkoutHold
+        + ", connectionCreation=" + connectionCreation + "]";
+  }
+
+  /**
+   * Percentiles of a recorded duration, in nanoseconds.
+   */
+  public static class Latency {
+
+    private final long count;
+    private final long p50;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    public Latency(long count, long p50, long p99, long p999, long max) {
+      this.count = count;
+      this.p50 = p50;
+      this.p99 = p99;
+      this.p999 = p999;
+      this.max = max;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getP50() {
+      return p50;
+    }
+
+    public long getP99() {
+      return p99;
+    }
+
+    public long getP999() {
+      return p999;
+    }
+
+    public long getMax() {
+      return max;
+    }
+
+    @Override
+    public String toString() {
+      return "[count=" + count + ", p50=" + p50 + ", p99=" + p99 + ", p999=" + p999 + ", max=" + max + "]";
+    }
+
+  }
+
+}
@@ -17,73 +17,230 @@ package org.apache.ibatis.datasource.pooled;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * @author Clinton Begin
  */
-public class PoolState {
+public class PoolState implements PoolStateMXBean {
 
   protected PooledDataSource dataSource;
 
+  /**
+   * Guards the connection lists. A fair lock is used rather than the object monitor so that waiting threads
+   * are served in arrival order and virtual threads do not pin their carrier while they wait.
+   */
+  protected final ReentrantLock lock = new ReentrantLock(true);
+  protected final Condition connectionReturned = lock.newCondition();
   protected final List<PooledConnection> idleConnections = new ArrayList<>();
   protected final List<PooledConnection> activeConnections = new ArrayList<>();
-  protected long requestCount = 0;
-  protected long accumulatedRequestTime = 0;
-  protected long accumulatedCheckoutTime = 0;
-  protected long claimedOverdueConnectionCount = 0;
-  protected long accumulatedCheckoutTimeOfOverdueConnections = 0;
-  protected long accumulatedWaitTime = 0;
-  protected long hadToWaitCount = 0;
-  protected long badConnectionCount = 0;
+  /**
+   * Connections being opened outside of the lock that will become idle, guarded by {@link #lock}.
+   */
+  protected int pendingConnectionCount = 0;
+  /**
+   * Idle connections taken out of the pool while the housekeeper validates them, guarded by {@link #lock}.
+   */
+  final List<PooledConnection> validatingConnections = new ArrayList<>();
+  protected final ConcurrentConnectionBag connectionBag = new ConcurrentConnectionBag();
+  private final LongAdder requestCount = new LongAdder();
+  private final LongAdder accumulatedRequestTime = new LongAdder();
+  private final LongAdder accumulatedCheckoutTime = new LongAdder();
+  private final LongAdder claimedOverdueConnectionCount = new LongAdder();
+  private final LongAdder accumulatedCheckoutTimeOfOverdueConnections = new LongAdder();
+  private final LongAdder accumulatedWaitTime = new LongAdder();
+  private final LongAdder hadToWaitCount = new LongAdder();
+  private final LongAdder badConnectionCount = new LongAdder();
+  private final LongAdder leakedConnectionCount = new LongAdder();
+  private final LongAdder preparedStatementCacheHitCount = new LongAdder();
+  private final LongAdder preparedStatementCacheMissCount = new LongAdder();
+  private final AtomicInteger pendingRequestCount = new AtomicInteger();
+  private final LatencyHistogram checkoutWaitTime = new LatencyHistogram();
+  private final LatencyHistogram checkoutHoldTime = new LatencyHistogram();
+  private final LatencyHistogram connectionCreationTime = new LatencyHistogram();
 
   public PoolState(PooledDataSource dataSource) {
     this.dataSource = dataSource;
   }
 
-  public synchronized long getRequestCount() {
-    return requestCount;
+  protected void recordRequest(long nanos) {
+    requestCount.increment();
+    accumulatedRequestTime.add(TimeUnit.NANOSECONDS.toMillis(nanos));
+    checkoutWaitTime.record(nanos);
   }
 
-  public synchronized long getAverageRequestTime() {
-    return requestCount == 0 ? 0 : accumulatedRequestTime / requestCount;
+  protected void recordCheckoutTime(long milliseconds) {
+    accumulatedCheckoutTime.add(milliseconds);
+    checkoutHoldTime.record(TimeUnit.MILLISECONDS.toNanos(milliseconds));
   }
 
-  public synchronized long getAverageWaitTime() {
-    return hadToWaitCount == 0 ? 0 : accumulatedWaitTime / hadToWaitCount;
+  void recordClaimedOverdue(long checkoutTime) {
+    claimedOverdueConnectionCount.increment();
+    accumulatedCheckoutTimeOfOverdueConnections.add(checkoutTime);
+    recordCheckoutTime(checkoutTime);
+  }
+
+  void recordHadToWait() {
+    hadToWaitCount.increment();
+  }
+
+  void recordWaitStart() {
+    pendingRequestCount.incrementAndGet();
+  }
+
+  void recordWaitEnd(long milliseconds) {
+    pendingRequestCount.decrementAndGet();
+    accumulatedWaitTime.add(milliseconds);
+  }
+
+  void recordBadConnection() {
+    badConnectionCount.increment();
+  }
 
+  void recordLeak() {
+    leakedConnectionCount.increment();
   }
 
-  public synchronized long getHadToWaitCount() {
-    return hadToWaitCount;
+  void recordStatementCacheHit() {
+    preparedStatementCacheHitCount.increment();
   }
 
-  public synchronized long getBadConnectionCount() {
-    return badConnectionCount;
+  void recordStatementCacheMiss() {
+    preparedStatementCacheMissCount.increment();
   }
 
-  public synchronized long getClaimedOverdueConnectionCount() {
-    return claimedOverdueConnectionCount;
+  void recordConnectionCreation(long nanos) {
+    connectionCreationTime.record(nanos);
   }
 
-  public synchronized long getAverageOverdueCheckoutTime() {
-    return claimedOverdueConnectionCount == 0 ? 0 : accumulatedCheckoutTimeOfOverdueConnections / claimedOverdueConnectionCount;
+  @Override
+  public long getRequestCount() {
+    return requestCount.sum();
   }
 
-  public synchronized long getAverageCheckoutTime() {
-    return requestCount == 0 ? 0 : accumulatedCheckoutTime / requestCount;
+  @Override
+  public long getAverageRequestTime() {
+    long count = requestCount.sum();
+    return count == 0 ? 0 : accumulatedRequestTime.sum() / count;
   }
 
+  @Override
+  public long getAverageWaitTime() {
+    long count = hadToWaitCount.sum();
+    return count == 0 ? 0 : accumulatedWaitTime.sum() / count;
+
+  }
+
+  @Override
+  public long getHadToWaitCount() {
+    return hadToWaitCount.sum();
+  }
+
+  @Override
+  public long getBadConnectionCount() {
+    return badConnectionCount.sum();
+  }
+
+  @Override
+  public long getClaimedOverdueConnectionCount() {
+    return claimedOverdueConnectionCount.sum();
+  }
+
+  @Override
+  public long getAverageOverdueCheckoutTime() {
+    long count = claimedOverdueConnectionCount.sum();
+    return count == 0 ? 0 : accumulatedCheckoutTimeOfOverdueConnections.sum() / count;
+  }
+
+  @Override
+  public long getAverageCheckoutTime() {
+    long count = requestCount.sum();
+    return count == 0 ? 0 : accumulatedCheckoutTime.sum() / count;
+  }
+
+
+  /**
+   * @return The number of checkouts reported by the leak detector
+   * @since 3.5.3
+   */
+  @Override
+  public long getLeakedConnectionCount() {
+    return leakedConnectionCount.sum();
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  @Override
+  public long getPreparedStatementCacheHitCount() {
+    return preparedStatementCacheHitCount.sum();
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  @Override
+  public long getPreparedStatementCacheMissCount() {
+    return preparedStatementCacheMissCount.sum();
+  }
+
+  @Override
+  public int getPendingRequestCount() {
+    return pendingRequestCount.get();
+  }
+
+  /**
+   * Takes a snapshot of the pool metrics without locking the pool.
+   *
+   * @return The metrics
+   * @since 3.5.3
+   */
+  @Override
+  public PoolMetrics getMetrics() {
+    int active;
+    int idle;
+    if (dataSource.poolLockFreeEnabled) {
+      active = connectionBag.getBorrowedCount();
+      idle = connectionBag.getIdleCount();
+    } else {
+      // read without the lock on purpose, the sizes may be slightly stale
+      active = activeConnections.size();
+      idle = idleConnections.size();
+    }
+    return new PoolMetrics(active, idle, pendingRequestCount.get(), checkoutWaitTime.snapshot(),
+        checkoutHoldTime.snapshot(), connectionCreationTime.snapshot());
+  }
 
-  public synchronized int getIdleConnectionCount() {
-    return idleConnections.size();
+  public int getIdleConnectionCount() {
+    if (dataSource.poolLockFreeEnabled) {
+      return connectionBag.getIdleCount();
+    }
+    lock.lock();
+    try {
+      return idleConnections.size();
+    } finally {
+      lock.unlock();
+    }
   }
 
-  public synchronized int getActiveConnectionCount() {
-    return activeConnections.size();
+  public int getActiveConnectionCount() {
+    if (dataSource.poolLockFreeEnabled) {
+      return connectionBag.getBorrowedCount();
+    }
+    lock.lock();
+    try {
+      return activeConnections.size();
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override
-  public synchronized String toString() {
+  public String toString() {
     StringBuilder builder = new StringBuilder();
     builder.append("\n===CONFINGURATION==============================================");
     builder.append("\n jdbcDriver                     ").append(dataSource.getDriver());
@@ -97,6 +254,12 @@ public class PoolState {
     builder.append("\n poolPingEnabled                ").append(dataSource.poolPingEnabled);
     builder.append("\n poolPingQuery                  ").append(dataSource.poolPingQuery);
     builder.append("\n poolPingConnectionsNotUsedFor  ").append(dataSource.poolPingConnectionsNotUsedFor);
+    builder.append("\n poolLockFreeEnabled            ").append(dataSource.poolLockFreeEnabled);
+    builder.append("\n poolHousekeepingPeriod         ").append(dataSource.poolHousekeepingPeriod);
+    builder.append("\n poolMinIdleConnections         ").append(dataSource.poolMinimumIdleConnections);
+    builder.append("\n poolMaxLifetime                ").append(dataSource.poolMaximumLifetime);
+    builder.append("\n poolLeakDetectionThreshold     ").append(dataSource.poolLeakDetectionThreshold);
+    builder.append("\n poolStatementCacheSize         ").append(dataSource.poolPreparedStatementCacheSize);
     builder.append("\n ---STATUS-----------------------------------------------------");
     builder.append("\n activeConnections              ").append(getActiveConnectionCount());
     builder.append("\n idleConnections                ").append(getIdleConnectionCount());
@@ -108,6 +271,10 @@ public class PoolState {
     builder.append("\n hadToWait                      ").append(getHadToWaitCount());
     builder.append("\n averageWaitTime                ").append(getAverageWaitTime());
     builder.append("\n badConnectionCount             ").append(getBadConnectionCount());
+    builder.append("\n pendingRequests                ").append(getPendingRequestCount());
+    builder.append("\n leakedConnections              ").append(getLeakedConnectionCount());
+    builder.append("\n statementCacheHits             ").append(getPreparedStatementCacheHitCount());
+    builder.append("\n statementCacheMisses           ").append(getPreparedStatementCacheMissCount());
     builder.append("\n===============================================================");
     return builder.toString();
   }
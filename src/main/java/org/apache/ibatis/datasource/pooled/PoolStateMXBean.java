@@ -0,0 +1,52 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+/**
+ * The management interface of a {@link PoolState}, registered when
+ * {@link PooledDataSource#setPoolJmxName(String)} is set.
+ *
+ * @since 3.5.3
+ */
+public interface PoolStateMXBean {
+
+  long getRequestCount();
+
+  long getAverageRequestTime();
+
+  long getAverageWaitTime();
+
+  long getHadToWaitCount();
+
+  long getBadConnectionCount();
+
+  long getClaimedOverdueConnectionCount();
+
+  long getAverageOverdueCheckoutTime();
+
+  long getAverageCheckoutTime();
+
+  long getLeakedConnectionCount();
+
+  long getPreparedStatementCacheHitCount();
+
+  long getPreparedStatementCacheMissCount();
+
+  int getPendingRequestCount();
+
+  PoolMetrics getMetrics();
+
+}
@@ -20,6 +20,8 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.ibatis.reflection.ExceptionUtil;
 
@@ -29,8 +31,13 @@ import org.apache.ibatis.reflection.ExceptionUtil;
 class PooledConnection implements InvocationHandler {
 
   private static final String CLOSE = "close";
+  private static final String PREPARE_STATEMENT = "prepareStatement";
   private static final Class<?>[] IFACES = new Class<?>[] { Connection.class };
 
+  private static final int STATE_NOT_IN_USE = 0;
+  private static final int STATE_IN_USE = 1;
+  private static final int STATE_RETIRED = 2;
+
   private final int hashCode;
   private final PooledDataSource dataSource;
   private final Connection realConnection;
@@ -40,6 +47,10 @@ class PooledConnection implements InvocationHandler {
   private long lastUsedTimestamp;
   private int connectionTypeCode;
   private boolean valid;
+  private final AtomicInteger state = new AtomicInteger(STATE_NOT_IN_USE);
+  private volatile Throwable checkoutSite;
+  private PreparedStatementCache statementCache;
+  private final AtomicBoolean leakReported = new AtomicBoolean();
 
   /**
    * Constructor for SimplePooledConnection that uses the Connection and PooledDataSource passed in.
@@ -64,6 +75,15 @@ class PooledConnection implements InvocationHandler {
     valid = false;
   }
 
+  /**
+   * Tells if this wrapper was invalidated, without checking the real connection.
+   *
+   * @return True if the connection was returned to the pool or closed
+   */
+  public boolean isInvalidated() {
+    return !valid;
+  }
+
   /**
    * Method to see if the connection is usable.
    *
@@ -73,6 +93,30 @@ class PooledConnection implements InvocationHandler {
     return valid && realConnection != null && dataSource.pingConnection(this);
   }
 
+  /**
+   * Reserves this connection for a single borrower. Used by the lock-free pool mode, where the same
+   * idle connection may be reachable from more than one place.
+   *
+   * @return True if the caller won the reservation
+   */
+  public boolean reserve() {
+    return state.compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE);
+  }
+
+  public boolean isReserved() {
+    return state.get() != STATE_NOT_IN_USE;
+  }
+
+  /**
+   * Takes a reserved connection out of use, either because it is being returned or because it is being
+   * claimed as overdue. Only one of the competing callers wins.
+   *
+   * @return True if the caller won the retirement
+   */
+  public boolean retire() {
+    return state.compareAndSet(STATE_IN_USE, STATE_RETIRED);
+  }
+
   /**
    * Getter for the *real* connection that this wraps.
    *
@@ -190,6 +234,51 @@ class PooledConnection implements InvocationHandler {
     this.checkoutTimestamp = timestamp;
   }
 
+  /**
+   * Getter for the prepared statement cache of the real connection.
+   *
+   * @return the cache, or null if statements are not cached
+   */
+  public PreparedStatementCache getStatementCache() {
+    return statementCache;
+  }
+
+  /**
+   * Setter for the prepared statement cache of the real connection.
+   *
+   * @param statementCache the cache
+   */
+  public void setStatementCache(PreparedStatementCache statementCache) {
+    this.statementCache = statementCache;
+  }
+
+  /**
+   * Getter for where this connection was checked out, recorded only for the checkouts sampled by the leak detector.
+   *
+   * @return the checkout site, or null if it was not recorded
+   */
+  public Throwable getCheckoutSite() {
+    return checkoutSite;
+  }
+
+  /**
+   * Setter for where this connection was checked out.
+   *
+   * @param checkoutSite the checkout site
+   */
+  public void setCheckoutSite(Throwable checkoutSite) {
+    this.checkoutSite = checkoutSite;
+  }
+
+  /**
+   * Marks this connection as reported by the leak detector, so that it is reported only once.
+   *
+   * @return True if it had not been reported yet
+   */
+  public boolean markLeakReported() {
+    return leakReported.compareAndSet(false, true);
+  }
+
   /**
    * Getter for the time that this connection has been checked out.
    *
@@ -242,6 +331,14 @@ class PooledConnection implements InvocationHandler {
         // throw an SQLException instead of a Runtime
         checkConnection();
       }
+      if (statementCache != null && PREPARE_STATEMENT.equals(methodName)) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        if (parameterTypes.length == 1) {
+          return statementCache.prepare(this, (String) args[0], null, null);
+        } else if (parameterTypes.length == 3 && parameterTypes[1] == int.class && parameterTypes[2] == int.class) {
+          return statementCache.prepare(this, (String) args[0], (Integer) args[1], (Integer) args[2]);
+        }
+      }
       return method.invoke(realConnection, args);
     } catch (Throwable t) {
       throw ExceptionUtil.unwrapThrowable(t);
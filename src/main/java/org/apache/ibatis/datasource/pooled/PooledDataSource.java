@@ -16,17 +16,31 @@
 package org.apache.ibatis.datasource.pooled;
 
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.sql.DataSource;
 
+import org.apache.ibatis.datasource.DataSourceException;
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
@@ -42,6 +56,8 @@ public class PooledDataSource implements DataSource {
 
   private final PoolState state = new PoolState(this);
 
+  private final PoolHousekeeper housekeeper = new PoolHousekeeper(this);
+
   private final UnpooledDataSource dataSource;
 
   // OPTIONAL CONFIGURATION FIELDS
@@ -53,6 +69,15 @@ public class PooledDataSource implements DataSource {
   protected String poolPingQuery = "NO PING QUERY SET";
   protected boolean poolPingEnabled;
   protected int poolPingConnectionsNotUsedFor;
+  protected boolean poolLockFreeEnabled;
+  protected int poolHousekeepingPeriod;
+  protected int poolMinimumIdleConnections;
+  protected int poolMaximumLifetime;
+  protected int poolValidationTimeout = 5;
+  protected String poolJmxName;
+  protected int poolLeakDetectionThreshold;
+  protected int poolLeakDetectionSampleRate = 16;
+  protected int poolPreparedStatementCacheSize;
 
   private int expectedConnectionTypeCode;
 
@@ -247,6 +272,146 @@ public class PooledDataSource implements DataSource {
     forceCloseAll();
   }
 
+  /**
+   * Determines if connections are checked out and returned through a lock-free connection bag
+   * instead of the pool-wide lock.
+   *
+   * The mode can only be changed while no connection is checked out, as a connection must be returned the
+   * way it was checked out.
+   *
+   * @param poolLockFreeEnabled True to check out connections without taking the pool lock
+   * @throws DataSourceException if the mode changes while connections are checked out
+   * @since 3.5.3
+   */
+  public void setPoolLockFreeEnabled(boolean poolLockFreeEnabled) {
+    if (poolLockFreeEnabled != this.poolLockFreeEnabled && state.getActiveConnectionCount() > 0) {
+      throw new DataSourceException("Cannot change the pool mode while " + state.getActiveConnectionCount()
+          + " connections are checked out.");
+    }
+    forceCloseAll();
+    this.poolLockFreeEnabled = poolLockFreeEnabled;
+  }
+
+  /**
+   * The delay between two runs of the background housekeeper, which validates idle connections with
+   * {@link Connection#isValid(int)}, retires connections older than the maximum lifetime and opens new
+   * connections until the minimum number of idle connections is reached. Zero, the default, disables it.
+   * <p>
+   * As idle connections are validated in the background, the ping query can be disabled so that
+   * checkouts do not pay for validation.
+   *
+   * @param milliseconds the housekeeping period in milliseconds
+   * @since 3.5.3
+   */
+  public void setPoolHousekeepingPeriod(int milliseconds) {
+    this.poolHousekeepingPeriod = milliseconds;
+    forceCloseAll();
+    scheduleHousekeeper();
+  }
+
+  /**
+   * The time a connection can be checked out before it is reported as a possible leak. When set, the
+   * connections checked out for longer are logged from a background thread, along with the stack trace of
+   * the checkout for the checkouts sampled by {@link #setPoolLeakDetectionSampleRate(int)}. Zero, the
+   * default, disables leak detection and records nothing.
+   *
+   * @param milliseconds the leak detection threshold in milliseconds
+   * @since 3.5.3
+   */
+  public void setPoolLeakDetectionThreshold(int milliseconds) {
+    this.poolLeakDetectionThreshold = milliseconds;
+    forceCloseAll();
+    scheduleHousekeeper();
+  }
+
+  /**
+   * The stack trace of one checkout out of this many is recorded for the leak detector, so that a leaking
+   * code path is eventually reported with its checkout site without paying for a stack trace on each
+   * checkout. 16 by default, 1 records every checkout.
+   *
+   * @param poolLeakDetectionSampleRate the sample rate of the checkout sites
+   * @since 3.5.3
+   */
+  public void setPoolLeakDetectionSampleRate(int poolLeakDetectionSampleRate) {
+    this.poolLeakDetectionSampleRate = poolLeakDetectionSampleRate;
+  }
+
+  /**
+   * The number of prepared statements cached per connection. Closing a statement prepared with
+   * {@link Connection#prepareStatement(String)} or {@link Connection#prepareStatement(String, int, int)}
+   * then keeps it open, so that preparing the same SQL again on that connection reuses it. Zero, the
+   * default, disables the cache.
+   *
+   * @param poolPreparedStatementCacheSize the number of statements cached per connection
+   * @since 3.5.3
+   */
+  public void setPoolPreparedStatementCacheSize(int poolPreparedStatementCacheSize) {
+    this.poolPreparedStatementCacheSize = poolPreparedStatementCacheSize;
+    forceCloseAll();
+  }
+
+  private void scheduleHousekeeper() {
+    housekeeper.schedule(poolHousekeepingPeriod, poolLeakDetectionThreshold <= 0 ? 0 : Math.max(poolLeakDetectionThreshold / 2, 1));
+  }
+
+  /**
+   * The minimum number of idle connections. They are opened by {@link #warmUp()}, which the
+   * {@link PooledDataSourceFactory} calls once the pool is configured, and kept open by the housekeeper.
+   *
+   * @param poolMinimumIdleConnections The minimum number of idle connections
+   * @since 3.5.3
+   */
+  public void setPoolMinimumIdleConnections(int poolMinimumIdleConnections) {
+    this.poolMinimumIdleConnections = poolMinimumIdleConnections;
+    forceCloseAll();
+  }
+
+  /**
+   * The maximum time a connection is kept open. Older connections are closed when they are returned
+   * and by the housekeeper when they are idle. Zero, the default, means no limit.
+   *
+   * @param milliseconds the maximum lifetime in milliseconds
+   * @since 3.5.3
+   */
+  public void setPoolMaximumLifetime(int milliseconds) {
+    this.poolMaximumLifetime = milliseconds;
+    forceCloseAll();
+  }
+
+  /**
+   * The time the housekeeper waits for {@link Connection#isValid(int)} to answer.
+   *
+   * @param seconds the validation timeout in seconds
+   * @since 3.5.3
+   */
+  public void setPoolValidationTimeout(int seconds) {
+    this.poolValidationTimeout = seconds;
+    forceCloseAll();
+  }
+
+  /**
+   * Registers the {@link PoolState} of this pool in the platform MBean server under the given name, so its
+   * statistics and {@link PoolMetrics} can be monitored. A null name unregisters it.
+   *
+   * @param poolJmxName the object name, e.g. {@code org.mybatis:type=PooledDataSource,name=main}
+   * @since 3.5.3
+   */
+  public void setPoolJmxName(String poolJmxName) {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      if (this.poolJmxName != null) {
+        server.unregisterMBean(new ObjectName(this.poolJmxName));
+      }
+      this.poolJmxName = null;
+      if (poolJmxName != null) {
+        server.registerMBean(state, new ObjectName(poolJmxName));
+        this.poolJmxName = poolJmxName;
+      }
+    } catch (JMException e) {
+      throw new DataSourceException("Error registering the pool state as '" + poolJmxName + "'.  Cause: " + e, e);
+    }
+  }
+
   public String getDriver() {
     return dataSource.getDriver();
   }
@@ -314,46 +479,152 @@ public class PooledDataSource implements DataSource {
     return poolPingConnectionsNotUsedFor;
   }
 
+  /**
+   * @since 3.5.3
+   */
+  public boolean isPoolLockFreeEnabled() {
+    return poolLockFreeEnabled;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public int getPoolHousekeepingPeriod() {
+    return poolHousekeepingPeriod;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public int getPoolMinimumIdleConnections() {
+    return poolMinimumIdleConnections;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public int getPoolMaximumLifetime() {
+    return poolMaximumLifetime;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public int getPoolValidationTimeout() {
+    return poolValidationTimeout;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public String getPoolJmxName() {
+    return poolJmxName;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public int getPoolLeakDetectionThreshold() {
+    return poolLeakDetectionThreshold;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public int getPoolLeakDetectionSampleRate() {
+    return poolLeakDetectionSampleRate;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public int getPoolPreparedStatementCacheSize() {
+    return poolPreparedStatementCacheSize;
+  }
+
+  /**
+   * Opens connections in parallel until the minimum number of idle connections is reached, so that the
+   * first requests do not have to open them. Does nothing if no minimum is set.
+   *
+   * @since 3.5.3
+   */
+  public void warmUp() {
+    int threads = Math.min(poolMinimumIdleConnections, poolMaximumActiveConnections);
+    if (threads <= 0) {
+      return;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "mybatis-pool-warm-up");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(this::fillIdleConnections));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      log.warn("Pool warm-up failed: " + e.getCause());
+    } finally {
+      executor.shutdown();
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("PooledDataSource warmed up with " + state.getIdleConnectionCount() + " idle connections.");
+    }
+  }
+
   /**
    * Closes all active and idle connections in the pool.
    */
   public void forceCloseAll() {
-    synchronized (state) {
+    state.lock.lock();
+    try {
       expectedConnectionTypeCode = assembleConnectionTypeCode(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
       for (int i = state.activeConnections.size(); i > 0; i--) {
-        try {
-          PooledConnection conn = state.activeConnections.remove(i - 1);
-          conn.invalidate();
-
-          Connection realConn = conn.getRealConnection();
-          if (!realConn.getAutoCommit()) {
-            realConn.rollback();
-          }
-          realConn.close();
-        } catch (Exception e) {
-          // ignore
-        }
+        closeRealConnection(state.activeConnections.remove(i - 1));
       }
       for (int i = state.idleConnections.size(); i > 0; i--) {
-        try {
-          PooledConnection conn = state.idleConnections.remove(i - 1);
-          conn.invalidate();
-
-          Connection realConn = conn.getRealConnection();
-          if (!realConn.getAutoCommit()) {
-            realConn.rollback();
-          }
-          realConn.close();
-        } catch (Exception e) {
-          // ignore
-        }
+        closeRealConnection(state.idleConnections.remove(i - 1));
+      }
+      // the housekeeper notices that they are gone once it has validated them
+      for (int i = state.validatingConnections.size(); i > 0; i--) {
+        closeRealConnection(state.validatingConnections.remove(i - 1));
       }
+    } finally {
+      state.lock.unlock();
+    }
+    for (PooledConnection conn : state.connectionBag.drainBorrowed()) {
+      state.connectionBag.discard();
+      closeRealConnection(conn);
+    }
+    for (PooledConnection conn : state.connectionBag.drainIdle()) {
+      state.connectionBag.discard();
+      closeRealConnection(conn);
     }
     if (log.isDebugEnabled()) {
       log.debug("PooledDataSource forcefully closed/removed all connections.");
     }
   }
 
+  private void closeRealConnection(PooledConnection conn) {
+    try {
+      conn.invalidate();
+
+      Connection realConn = conn.getRealConnection();
+      if (!realConn.getAutoCommit()) {
+        realConn.rollback();
+      }
+      realConn.close();
+    } catch (Exception e) {
+      // ignore
+    }
+  }
+
   public PoolState getPoolState() {
     return state;
   }
@@ -363,12 +634,18 @@ public class PooledDataSource implements DataSource {
   }
 
   protected void pushConnection(PooledConnection conn) throws SQLException {
+    if (poolLockFreeEnabled) {
+      pushConnectionLockFree(conn);
+      return;
+    }
 
-    synchronized (state) {
+    state.lock.lock();
+    try {
       state.activeConnections.remove(conn);
       if (conn.isValid()) {
-        if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode) {
-          state.accumulatedCheckoutTime += conn.getCheckoutTime();
+        if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode
+            && !isExpired(conn)) {
+          state.recordCheckoutTime(conn.getCheckoutTime());
           if (!conn.getRealConnection().getAutoCommit()) {
             conn.getRealConnection().rollback();
           }
@@ -376,17 +653,23 @@ public class PooledDataSource implements DataSource {
           state.idleConnections.add(newConn);
           newConn.setCreatedTimestamp(conn.getCreatedTimestamp());
           newConn.setLastUsedTimestamp(conn.getLastUsedTimestamp());
+          newConn.setStatementCache(conn.getStatementCache());
           conn.invalidate();
           if (log.isDebugEnabled()) {
             log.debug("Returned connection " + newConn.getRealHashCode() + " to pool.");
           }
-          state.notifyAll();
+          state.connectionReturned.signal();
         } else {
-          state.accumulatedCheckoutTime += conn.getCheckoutTime();
-          if (!conn.getRealConnection().getAutoCommit()) {
-            conn.getRealConnection().rollback();
+          state.recordCheckoutTime(conn.getCheckoutTime());
+          try {
+            if (!conn.getRealConnection().getAutoCommit()) {
+              conn.getRealConnection().rollback();
+            }
+            conn.getRealConnection().close();
+          } finally {
+            // a waiter may open a new connection in its place
+            state.connectionReturned.signal();
           }
-          conn.getRealConnection().close();
           if (log.isDebugEnabled()) {
             log.debug("Closed connection " + conn.getRealHashCode() + ".");
           }
@@ -396,20 +679,108 @@ public class PooledDataSource implements DataSource {
         if (log.isDebugEnabled()) {
           log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
         }
-        state.badConnectionCount++;
+        state.recordBadConnection();
+        state.connectionReturned.signal();
+      }
+    } finally {
+      state.lock.unlock();
+    }
+  }
+
+  private void pushConnectionLockFree(PooledConnection conn) throws SQLException {
+    ConcurrentConnectionBag bag = state.connectionBag;
+    if (!conn.retire()) {
+      // already claimed as overdue or closed by forceCloseAll()
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+      }
+      state.recordBadConnection();
+      return;
+    }
+    bag.unmarkBorrowed(conn);
+    state.recordCheckoutTime(conn.getCheckoutTime());
+    if (conn.isValid()) {
+      boolean returned = false;
+      if (conn.getConnectionTypeCode() == expectedConnectionTypeCode && !isExpired(conn)) {
+        if (!conn.getRealConnection().getAutoCommit()) {
+          conn.getRealConnection().rollback();
+        }
+        PooledConnection newConn = new PooledConnection(conn.getRealConnection(), this);
+        newConn.setCreatedTimestamp(conn.getCreatedTimestamp());
+        newConn.setLastUsedTimestamp(conn.getLastUsedTimestamp());
+        newConn.setStatementCache(conn.getStatementCache());
+        // handed to a waiter, or kept idle unless there are enough idle connections already
+        returned = bag.offer(newConn, poolMaximumIdleConnections);
+        if (returned) {
+          conn.invalidate();
+          if (log.isDebugEnabled()) {
+            log.debug("Returned connection " + newConn.getRealHashCode() + " to pool.");
+          }
+        }
+      }
+      if (!returned) {
+        conn.invalidate();
+        try {
+          if (!conn.getRealConnection().getAutoCommit()) {
+            conn.getRealConnection().rollback();
+          }
+        } finally {
+          try {
+            conn.getRealConnection().close();
+          } finally {
+            // once closed, a waiter may open a new connection in its place
+            bag.discard();
+          }
+        }
+        if (log.isDebugEnabled()) {
+          log.debug("Closed connection " + conn.getRealHashCode() + ".");
+        }
+      }
+    } else {
+      bag.discard();
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
       }
+      state.recordBadConnection();
     }
   }
 
   private PooledConnection popConnection(String username, String password) throws SQLException {
+    if (poolLockFreeEnabled) {
+      return popConnectionLockFree(username, password);
+    }
     boolean countedWait = false;
     PooledConnection conn = null;
-    long t = System.currentTimeMillis();
+    long t = System.nanoTime();
     int localBadConnectionCount = 0;
 
+    boolean openNew = false;
+
     while (conn == null) {
-      synchronized (state) {
-        if (!state.idleConnections.isEmpty()) {
+      if (openNew) {
+        // the slot was reserved in the previous round, the connection is opened without holding the lock
+        try {
+          conn = openConnection();
+        } catch (SQLException | RuntimeException e) {
+          state.lock.lock();
+          try {
+            state.pendingConnectionCount--;
+            state.connectionReturned.signal();
+          } finally {
+            state.lock.unlock();
+          }
+          throw e;
+        }
+        if (log.isDebugEnabled()) {
+          log.debug("Created connection " + conn.getRealHashCode() + ".");
+        }
+      }
+      state.lock.lock();
+      try {
+        if (openNew) {
+          state.pendingConnectionCount--;
+          openNew = false;
+        } else if (!state.idleConnections.isEmpty()) {
           // Pool has available connection
           conn = state.idleConnections.remove(0);
           if (log.isDebugEnabled()) {
@@ -417,21 +788,20 @@ public class PooledDataSource implements DataSource {
           }
         } else {
           // Pool does not have available connection
-          if (state.activeConnections.size() < poolMaximumActiveConnections) {
-            // Can create new connection
-            conn = new PooledConnection(dataSource.getConnection(), this);
-            if (log.isDebugEnabled()) {
-              log.debug("Created connection " + conn.getRealHashCode() + ".");
-            }
+          if (state.activeConnections.size() + state.pendingConnectionCount + state.validatingConnections.size()
+              < poolMaximumActiveConnections) {
+            // Can create new connection, reserve a slot and open it outside of the lock
+            state.pendingConnectionCount++;
+            openNew = true;
           } else {
             // Cannot create new connection
-            PooledConnection oldestActiveConnection = state.activeConnections.get(0);
-            long longestCheckoutTime = oldestActiveConnection.getCheckoutTime();
-            if (longestCheckoutTime > poolMaximumCheckoutTime) {
+            // the pool may be full of connections that are still being opened
+            PooledConnection oldestActiveConnection = state.activeConnections.isEmpty() ? null : state.activeConnections.get(0);
+            long longestCheckoutTime = oldestActiveConnection == null ? 0 : oldestActiveConnection.getCheckoutTime();
+            if (oldestActiveConnection != null && longestCheckoutTime > poolMaximumCheckoutTime) {
               // Can claim overdue connection
-              state.claimedOverdueConnectionCount++;
-              state.accumulatedCheckoutTimeOfOverdueConnections += longestCheckoutTime;
-              state.accumulatedCheckoutTime += longestCheckoutTime;
+              reportLeak(oldestActiveConnection, longestCheckoutTime);
+              state.recordClaimedOverdue(longestCheckoutTime);
               state.activeConnections.remove(oldestActiveConnection);
               if (!oldestActiveConnection.getRealConnection().getAutoCommit()) {
                 try {
@@ -451,6 +821,7 @@ public class PooledDataSource implements DataSource {
               conn = new PooledConnection(oldestActiveConnection.getRealConnection(), this);
               conn.setCreatedTimestamp(oldestActiveConnection.getCreatedTimestamp());
               conn.setLastUsedTimestamp(oldestActiveConnection.getLastUsedTimestamp());
+              conn.setStatementCache(oldestActiveConnection.getStatementCache());
               oldestActiveConnection.invalidate();
               if (log.isDebugEnabled()) {
                 log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
@@ -459,15 +830,19 @@ public class PooledDataSource implements DataSource {
               // Must wait
               try {
                 if (!countedWait) {
-                  state.hadToWaitCount++;
+                  state.recordHadToWait();
                   countedWait = true;
                 }
                 if (log.isDebugEnabled()) {
                   log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
                 }
                 long wt = System.currentTimeMillis();
-                state.wait(poolTimeToWait);
-                state.accumulatedWaitTime += System.currentTimeMillis() - wt;
+                state.recordWaitStart();
+                try {
+                  state.connectionReturned.await(poolTimeToWait, TimeUnit.MILLISECONDS);
+                } finally {
+                  state.recordWaitEnd(System.currentTimeMillis() - wt);
+                }
               } catch (InterruptedException e) {
                 break;
               }
@@ -482,15 +857,15 @@ public class PooledDataSource implements DataSource {
             }
             conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
             conn.setCheckoutTimestamp(System.currentTimeMillis());
+            conn.setCheckoutSite(sampleCheckoutSite());
             conn.setLastUsedTimestamp(System.currentTimeMillis());
             state.activeConnections.add(conn);
-            state.requestCount++;
-            state.accumulatedRequestTime += System.currentTimeMillis() - t;
+            state.recordRequest(System.nanoTime() - t);
           } else {
             if (log.isDebugEnabled()) {
               log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
             }
-            state.badConnectionCount++;
+            state.recordBadConnection();
             localBadConnectionCount++;
             conn = null;
             if (localBadConnectionCount > (poolMaximumIdleConnections + poolMaximumLocalBadConnectionTolerance)) {
@@ -501,6 +876,8 @@ public class PooledDataSource implements DataSource {
             }
           }
         }
+      } finally {
+        state.lock.unlock();
       }
 
     }
@@ -515,6 +892,358 @@ public class PooledDataSource implements DataSource {
     return conn;
   }
 
+  private PooledConnection popConnectionLockFree(String username, String password) throws SQLException {
+    ConcurrentConnectionBag bag = state.connectionBag;
+    boolean countedWait = false;
+    long t = System.nanoTime();
+    int localBadConnectionCount = 0;
+
+    while (true) {
+      PooledConnection conn = bag.poll();
+      if (conn != null) {
+        if (log.isDebugEnabled()) {
+          log.debug("Checked out connection " + conn.getRealHashCode() + " from pool.");
+        }
+      } else if (bag.reserveNew(poolMaximumActiveConnections)) {
+        // the physical connection is opened without holding any lock
+        try {
+          conn = openConnection();
+        } catch (SQLException | RuntimeException e) {
+          bag.discard();
+          throw e;
+        }
+        conn.reserve();
+        if (log.isDebugEnabled()) {
+          log.debug("Created connection " + conn.getRealHashCode() + ".");
+        }
+      } else {
+        conn = claimOverdueConnection(bag);
+        if (conn == null) {
+          if (!countedWait) {
+            state.recordHadToWait();
+            countedWait = true;
+          }
+          if (log.isDebugEnabled()) {
+            log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
+          }
+          long wt = System.currentTimeMillis();
+          state.recordWaitStart();
+          try {
+            conn = bag.poll(poolTimeToWait, TimeUnit.MILLISECONDS);
+          } catch (InterruptedException e) {
+            break;
+          } finally {
+            state.recordWaitEnd(System.currentTimeMillis() - wt);
+          }
+        }
+      }
+      if (conn != null) {
+        if (conn.isValid()) {
+          if (!conn.getRealConnection().getAutoCommit()) {
+            conn.getRealConnection().rollback();
+          }
+          conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
+          conn.setCheckoutTimestamp(System.currentTimeMillis());
+          conn.setCheckoutSite(sampleCheckoutSite());
+          conn.setLastUsedTimestamp(System.currentTimeMillis());
+          bag.markBorrowed(conn);
+          state.recordRequest(System.nanoTime() - t);
+          return conn;
+        }
+        if (log.isDebugEnabled()) {
+          log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
+        }
+        bag.discard();
+        state.recordBadConnection();
+        localBadConnectionCount++;
+        if (localBadConnectionCount > (poolMaximumIdleConnections + poolMaximumLocalBadConnectionTolerance)) {
+          if (log.isDebugEnabled()) {
+            log.debug("PooledDataSource: Could not get a good connection to the database.");
+          }
+          throw new SQLException("PooledDataSource: Could not get a good connection to the database.");
+        }
+      }
+    }
+
+    if (log.isDebugEnabled()) {
+      log.debug("PooledDataSource: Unknown severe error condition.  The connection pool returned a null connection.");
+    }
+    throw new SQLException("PooledDataSource: Unknown severe error condition.  The connection pool returned a null connection.");
+  }
+
+  private PooledConnection claimOverdueConnection(ConcurrentConnectionBag bag) {
+    PooledConnection oldestActiveConnection = bag.findOldestBorrowed();
+    if (oldestActiveConnection == null) {
+      return null;
+    }
+    long longestCheckoutTime = oldestActiveConnection.getCheckoutTime();
+    if (longestCheckoutTime <= poolMaximumCheckoutTime || !oldestActiveConnection.retire()) {
+      return null;
+    }
+    bag.unmarkBorrowed(oldestActiveConnection);
+    reportLeak(oldestActiveConnection, longestCheckoutTime);
+    state.recordClaimedOverdue(longestCheckoutTime);
+    try {
+      if (!oldestActiveConnection.getRealConnection().getAutoCommit()) {
+        oldestActiveConnection.getRealConnection().rollback();
+      }
+    } catch (SQLException e) {
+      // same as the locked path, a bad connection is detected by the validity check of the caller
+      log.debug("Bad connection. Could not roll back");
+    }
+    PooledConnection conn = new PooledConnection(oldestActiveConnection.getRealConnection(), this);
+    conn.setCreatedTimestamp(oldestActiveConnection.getCreatedTimestamp());
+    conn.setLastUsedTimestamp(oldestActiveConnection.getLastUsedTimestamp());
+    conn.setStatementCache(oldestActiveConnection.getStatementCache());
+    conn.reserve();
+    oldestActiveConnection.invalidate();
+    if (log.isDebugEnabled()) {
+      log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
+    }
+    return conn;
+  }
+
+  private Throwable sampleCheckoutSite() {
+    if (poolLeakDetectionThreshold <= 0
+        || poolLeakDetectionSampleRate > 1 && ThreadLocalRandom.current().nextInt(poolLeakDetectionSampleRate) != 0) {
+      return null;
+    }
+    return new Throwable("Connection checked out");
+  }
+
+  private PooledConnection openConnection() throws SQLException {
+    long start = System.nanoTime();
+    Connection connection = dataSource.getConnection();
+    state.recordConnectionCreation(System.nanoTime() - start);
+    PooledConnection conn = new PooledConnection(connection, this);
+    if (poolPreparedStatementCacheSize > 0) {
+      conn.setStatementCache(new PreparedStatementCache(poolPreparedStatementCacheSize, state));
+    }
+    return conn;
+  }
+
+  private boolean isExpired(PooledConnection conn) {
+    return poolMaximumLifetime > 0 && conn.getAge() > poolMaximumLifetime;
+  }
+
+  /**
+   * Validates the idle connections, retires the expired ones and opens new connections until the
+   * minimum number of idle connections is reached. Called by the background housekeeper, each idle
+   * connection is taken out of the pool only while it is being validated.
+   */
+  void housekeep() {
+    List<PooledConnection> candidates;
+    if (poolLockFreeEnabled) {
+      candidates = state.connectionBag.getIdleConnections();
+    } else {
+      state.lock.lock();
+      try {
+        candidates = new ArrayList<>(state.idleConnections);
+      } finally {
+        state.lock.unlock();
+      }
+    }
+    for (PooledConnection candidate : candidates) {
+      PooledConnection conn = takeIdleConnection(candidate);
+      if (conn == null) {
+        // checked out in the meantime
+        continue;
+      }
+      if (isExpired(conn)) {
+        if (log.isDebugEnabled()) {
+          log.debug("Retiring connection " + conn.getRealHashCode() + " after " + conn.getAge() + " milliseconds.");
+        }
+        discardIdleConnection(conn);
+      } else if (validateIdleConnection(conn)) {
+        conn.setLastUsedTimestamp(System.currentTimeMillis());
+        returnIdleConnection(conn);
+      } else {
+        state.recordBadConnection();
+        discardIdleConnection(conn);
+      }
+    }
+    fillIdleConnections();
+  }
+
+  /**
+   * Logs the connections that have been checked out for longer than the leak detection threshold, along
+   * with where they were checked out. Called by the background housekeeper, each checkout is reported once.
+   */
+  void detectLeaks() {
+    int threshold = poolLeakDetectionThreshold;
+    if (threshold <= 0) {
+      return;
+    }
+    List<PooledConnection> candidates;
+    if (poolLockFreeEnabled) {
+      candidates = state.connectionBag.getBorrowedConnections();
+    } else {
+      state.lock.lock();
+      try {
+        candidates = new ArrayList<>(state.activeConnections);
+      } finally {
+        state.lock.unlock();
+      }
+    }
+    for (PooledConnection conn : candidates) {
+      long checkoutTime = conn.getCheckoutTime();
+      if (checkoutTime > threshold) {
+        reportLeak(conn, checkoutTime);
+      }
+    }
+  }
+
+  private void reportLeak(PooledConnection conn, long checkoutTime) {
+    if (poolLeakDetectionThreshold <= 0 || !conn.markLeakReported()) {
+      return;
+    }
+    state.recordLeak();
+    StringWriter checkoutSite = new StringWriter();
+    Throwable site = conn.getCheckoutSite();
+    if (site != null) {
+      site.printStackTrace(new PrintWriter(checkoutSite));
+    } else {
+      checkoutSite.write("The checkout site was not sampled.");
+    }
+    log.warn("Connection " + conn.getRealHashCode() + " has been checked out for " + checkoutTime
+        + " milliseconds, it may have been leaked. " + checkoutSite);
+  }
+
+  private PooledConnection takeIdleConnection(PooledConnection candidate) {
+    if (poolLockFreeEnabled) {
+      return state.connectionBag.take(candidate) ? candidate : null;
+    }
+    state.lock.lock();
+    try {
+      int index = state.idleConnections.indexOf(candidate);
+      if (index < 0) {
+        return null;
+      }
+      // still counted by the pool while it is validated
+      PooledConnection conn = state.idleConnections.remove(index);
+      state.validatingConnections.add(conn);
+      return conn;
+    } finally {
+      state.lock.unlock();
+    }
+  }
+
+  private boolean validateIdleConnection(PooledConnection conn) {
+    try {
+      if (conn.getRealConnection().isValid(poolValidationTimeout)) {
+        return true;
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("Connection " + conn.getRealHashCode() + " is BAD.");
+      }
+    } catch (SQLException e) {
+      if (log.isDebugEnabled()) {
+        log.debug("Connection " + conn.getRealHashCode() + " is BAD: " + e.getMessage());
+      }
+    }
+    return false;
+  }
+
+  private void returnIdleConnection(PooledConnection conn) {
+    if (poolLockFreeEnabled) {
+      state.connectionBag.offer(newIdleConnection(conn));
+      return;
+    }
+    state.lock.lock();
+    try {
+      if (state.validatingConnections.remove(conn)) {
+        state.idleConnections.add(newIdleConnection(conn));
+        state.connectionReturned.signal();
+      }
+    } finally {
+      state.lock.unlock();
+    }
+  }
+
+  private PooledConnection newIdleConnection(PooledConnection conn) {
+    PooledConnection newConn = new PooledConnection(conn.getRealConnection(), this);
+    newConn.setCreatedTimestamp(conn.getCreatedTimestamp());
+    newConn.setLastUsedTimestamp(conn.getLastUsedTimestamp());
+    newConn.setStatementCache(conn.getStatementCache());
+    conn.invalidate();
+    return newConn;
+  }
+
+  private void discardIdleConnection(PooledConnection conn) {
+    if (poolLockFreeEnabled) {
+      state.connectionBag.discard();
+    } else {
+      state.lock.lock();
+      try {
+        state.validatingConnections.remove(conn);
+        // a waiter may open a new connection in its place
+        state.connectionReturned.signal();
+      } finally {
+        state.lock.unlock();
+      }
+    }
+    closeRealConnection(conn);
+  }
+
+  private void fillIdleConnections() {
+    while (reserveIdleConnection()) {
+      PooledConnection conn;
+      try {
+        conn = openConnection();
+      } catch (SQLException | RuntimeException e) {
+        cancelIdleConnectionReservation();
+        log.warn("Could not open a connection for the minimum idle pool: " + e.getMessage());
+        return;
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("Created idle connection " + conn.getRealHashCode() + ".");
+      }
+      if (poolLockFreeEnabled) {
+        state.connectionBag.offer(conn);
+      } else {
+        state.lock.lock();
+        try {
+          state.pendingConnectionCount--;
+          state.idleConnections.add(conn);
+          state.connectionReturned.signal();
+        } finally {
+          state.lock.unlock();
+        }
+      }
+    }
+  }
+
+  private boolean reserveIdleConnection() {
+    if (poolLockFreeEnabled) {
+      ConcurrentConnectionBag bag = state.connectionBag;
+      return bag.getIdleCount() < poolMinimumIdleConnections && bag.reserveNew(poolMaximumActiveConnections);
+    }
+    state.lock.lock();
+    try {
+      int idle = state.idleConnections.size() + state.pendingConnectionCount + state.validatingConnections.size();
+      if (idle < poolMinimumIdleConnections && idle + state.activeConnections.size() < poolMaximumActiveConnections) {
+        state.pendingConnectionCount++;
+        return true;
+      }
+      return false;
+    } finally {
+      state.lock.unlock();
+    }
+  }
+
+  private void cancelIdleConnectionReservation() {
+    if (poolLockFreeEnabled) {
+      state.connectionBag.discard();
+      return;
+    }
+    state.lock.lock();
+    try {
+      state.pendingConnectionCount--;
+    } finally {
+      state.lock.unlock();
+    }
+  }
+
   /**
    * Method to check to see if a connection is still usable
    *
@@ -587,6 +1316,7 @@ public class PooledDataSource implements DataSource {
 
   @Override
   protected void finalize() throws Throwable {
+    housekeeper.cancel();
     forceCloseAll();
     super.finalize();
   }
@@ -0,0 +1,255 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * LRU cache of the prepared statements of one physical connection.
+ * <p>
+ * It outlives the {@link PooledConnection} wrappers of the connection and is handed from one to the next.
+ * Closing a statement obtained from the cache resets it and makes it available again instead of closing it.
+ * Like the connection itself, the cache is only used by the thread that checked the connection out.
+ */
+class PreparedStatementCache {
+
+  private static final Class<?>[] IFACES = new Class<?>[] { PreparedStatement.class };
+  private static final Set<String> SETTINGS = new HashSet<>(
+      Arrays.asList("setFetchSize", "setFetchDirection", "setMaxRows", "setLargeMaxRows", "setMaxFieldSize", "setQueryTimeout"));
+
+  private final PoolState state;
+  private final Map<Key, CachedStatement> idleStatements;
+
+  public PreparedStatementCache(final int size, PoolState state) {
+    this.state = state;
+    this.idleStatements = new LinkedHashMap<Key, CachedStatement>(size, .75F, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, CachedStatement> eldest) {
+        if (size() > size) {
+          eldest.getValue().closeQuietly();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Returns an idle statement for the SQL, or prepares a new one.
+   *
+   * @param owner the connection the statement is prepared for
+   * @param sql the SQL
+   * @param resultSetType the result set type, or null to use the driver default
+   * @param resultSetConcurrency the result set concurrency, or null to use the driver default
+   * @return A proxy of the statement
+   * @throws SQLException if the statement could not be prepared
+   */
+  public PreparedStatement prepare(PooledConnection owner, String sql, Integer resultSetType, Integer resultSetConcurrency)
+      throws SQLException {
+    Key key = new Key(sql, resultSetType, resultSetConcurrency);
+    CachedStatement cached = idleStatements.remove(key);
+    if (cached != null) {
+      state.recordStatementCacheHit();
+    } else {
+      state.recordStatementCacheMiss();
+      Connection connection = owner.getRealConnection();
+      PreparedStatement statement = resultSetType == null ? connection.prepareStatement(sql)
+          : connection.prepareStatement(sql, resultSetType, resultSetConcurrency);
+      cached = new CachedStatement(key, statement);
+    }
+    cached.owner = owner;
+    return cached.proxy;
+  }
+
+  public int getIdleCount() {
+    return idleStatements.size();
+  }
+
+  private void release(CachedStatement cached) throws SQLException {
+    PooledConnection owner = cached.owner;
+    cached.owner = null;
+    if (owner.isInvalidated() || idleStatements.containsKey(cached.key)) {
+      // the connection went back to the pool first, or the same SQL was prepared twice
+      cached.statement.close();
+      return;
+    }
+    try {
+      cached.reset();
+    } catch (SQLException e) {
+      cached.closeQuietly();
+      throw e;
+    }
+    idleStatements.put(cached.key, cached);
+  }
+
+  private class CachedStatement implements InvocationHandler {
+
+    private final Key key;
+    private final PreparedStatement statement;
+    private final PreparedStatement proxy;
+    private final int fetchSize;
+    private final int fetchDirection;
+    private final int maxRows;
+    private final int maxFieldSize;
+    private final int queryTimeout;
+    private final List<ResultSet> resultSets = new ArrayList<>();
+    private PooledConnection owner;
+    private boolean settingsChanged;
+    private boolean batched;
+
+    CachedStatement(Key key, PreparedStatement statement) throws SQLException {
+      this.key = key;
+      this.statement = statement;
+      this.fetchSize = statement.getFetchSize();
+      this.fetchDirection = statement.getFetchDirection();
+      this.maxRows = statement.getMaxRows();
+      this.maxFieldSize = statement.getMaxFieldSize();
+      this.queryTimeout = statement.getQueryTimeout();
+      this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), IFACES, this);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String methodName = method.getName();
+      if (Object.class.equals(method.getDeclaringClass())) {
+        return method.invoke(this, args);
+      }
+      if ("close".equals(methodName)) {
+        if (owner != null) {
+          release(this);
+        }
+        return null;
+      }
+      if ("isClosed".equals(methodName)) {
+        return owner == null;
+      }
+      if (owner == null) {
+        throw new SQLException("Error accessing cached PreparedStatement. Statement is closed.");
+      }
+      if ("getConnection".equals(methodName)) {
+        return owner.getProxyConnection();
+      }
+      if (SETTINGS.contains(methodName)) {
+        settingsChanged = true;
+      } else if ("addBatch".equals(methodName)) {
+        batched = true;
+      }
+      Object result;
+      try {
+        result = method.invoke(statement, args);
+      } catch (Throwable t) {
+        throw ExceptionUtil.unwrapThrowable(t);
+      }
+      if (result instanceof ResultSet) {
+        // executeQuery, getResultSet and getGeneratedKeys, a real close() would close them
+        resultSets.add((ResultSet) result);
+      }
+      return result;
+    }
+
+    void reset() throws SQLException {
+      try {
+        for (ResultSet rs : resultSets) {
+          rs.close();
+        }
+        // the result of an execute() that was never read
+        closeResultSet(statement.getResultSet());
+      } finally {
+        resultSets.clear();
+      }
+      statement.clearParameters();
+      statement.clearWarnings();
+      if (batched) {
+        statement.clearBatch();
+        batched = false;
+      }
+      if (settingsChanged) {
+        statement.setFetchSize(fetchSize);
+        statement.setFetchDirection(fetchDirection);
+        statement.setMaxRows(maxRows);
+        statement.setMaxFieldSize(maxFieldSize);
+        statement.setQueryTimeout(queryTimeout);
+        settingsChanged = false;
+      }
+    }
+
+    private void closeResultSet(ResultSet rs) throws SQLException {
+      if (rs != null) {
+        rs.close();
+      }
+    }
+
+    void closeQuietly() {
+      try {
+        statement.close();
+      } catch (SQLException e) {
+        // ignore
+      }
+    }
+
+  }
+
+  private static class Key {
+
+    private final String sql;
+    private final Integer resultSetType;
+    private final Integer resultSetConcurrency;
+
+    Key(String sql, Integer resultSetType, Integer resultSetConcurrency) {
+      this.sql = sql;
+      this.resultSetType = resultSetType;
+      this.resultSetConcurrency = resultSetConcurrency;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return sql.equals(other.sql) && Objects.equals(resultSetType, other.resultSetType)
+          && Objects.equals(resultSetConcurrency, other.resultSetConcurrency);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(sql, resultSetType, resultSetConcurrency);
+    }
+
+  }
+
+}
@@ -26,6 +26,7 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.loader.ResultLoader;
 import org.apache.ibatis.executor.statement.StatementUtil;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
@@ -55,17 +56,20 @@ public abstract class BaseExecutor implements Executor {
   protected Executor wrapper;
 
   protected ConcurrentLinkedQueue<DeferredLoad> deferredLoads;
+  protected ConcurrentLinkedQueue<DeferredResultLoad> deferredResultLoads;
   // 一级缓存  装饰者模式
   protected PerpetualCache localCache;
   protected PerpetualCache localOutputParameterCache;
   protected Configuration configuration;
 
   protected int queryStack;
+  private boolean loadingDeferredResults;
   private boolean closed;
 
   protected BaseExecutor(Configuration configuration, Transaction transaction) {
     this.transaction = transaction;
     this.deferredLoads = new ConcurrentLinkedQueue<>();
+    this.deferredResultLoads = new ConcurrentLinkedQueue<>();
     this.localCache = new PerpetualCache("LocalCache");
     this.localOutputParameterCache = new PerpetualCache("LocalOutputParameterCache");
     this.closed = false;
@@ -97,6 +101,7 @@ public abstract class BaseExecutor implements Executor {
     } finally {
       transaction = null;
       deferredLoads = null;
+      deferredResultLoads = null;
       localCache = null;
       localOutputParameterCache = null;
       closed = true;
@@ -150,6 +155,7 @@ public abstract class BaseExecutor implements Executor {
       clearLocalCache();
     }
     List<E> list;
+    boolean completed = false;
     try {
       queryStack++;
       /**
@@ -166,8 +172,13 @@ public abstract class BaseExecutor implements Executor {
         // 一级缓存中没有获取到，真正开始从数据库查询
         list = queryFromDatabase(ms, parameter, rowBounds, resultHandler, key, boundSql);
       }
+      completed = true;
     } finally {
       queryStack--;
+      if (!completed && queryStack == 0 && !loadingDeferredResults) {
+        // the results the loads were deferred for are discarded with the failed query
+        deferredResultLoads.clear();
+      }
     }
     if (queryStack == 0) {
       for (DeferredLoad deferredLoad : deferredLoads) {
@@ -175,6 +186,20 @@ public abstract class BaseExecutor implements Executor {
       }
       // issue #601
       deferredLoads.clear();
+      // 延迟的嵌套查询, 同一批的结果在第一个加载时一起查询
+      // 加载时执行的查询不再处理队列, 它们的嵌套查询由外层循环按批加载
+      if (!loadingDeferredResults) {
+        loadingDeferredResults = true;
+        try {
+          DeferredResultLoad deferredResultLoad;
+          while ((deferredResultLoad = deferredResultLoads.poll()) != null) {
+            deferredResultLoad.load();
+          }
+        } finally {
+          deferredResultLoads.clear();
+          loadingDeferredResults = false;
+        }
+      }
       if (configuration.getLocalCacheScope() == LocalCacheScope.STATEMENT) {
         // issue #482
         clearLocalCache();
@@ -202,6 +227,14 @@ public abstract class BaseExecutor implements Executor {
     }
   }
 
+  @Override
+  public void deferLoad(MetaObject resultObject, String property, ResultLoader resultLoader) {
+    if (closed) {
+      throw new ExecutorException("Executor was closed.");
+    }
+    deferredResultLoads.add(new DeferredResultLoad(resultObject, property, resultLoader, configuration));
+  }
+
   @Override
   public CacheKey createCacheKey(MappedStatement ms, Object parameterObject, RowBounds rowBounds, BoundSql boundSql) {
     //
@@ -289,6 +322,10 @@ public abstract class BaseExecutor implements Executor {
     if (!closed) {
       localCache.clear();
       localOutputParameterCache.clear();
+      if (!loadingDeferredResults) {
+        // the deferred loads still queued belong to results the session no longer keeps
+        deferredResultLoads.clear();
+      }
     }
   }
 
@@ -426,4 +463,27 @@ public abstract class BaseExecutor implements Executor {
 
   }
 
+  private static class DeferredResultLoad {
+
+    private final MetaObject resultObject;
+    private final String property;
+    private final ResultLoader resultLoader;
+    private final Configuration configuration;
+
+    public DeferredResultLoad(MetaObject resultObject, String property, ResultLoader resultLoader, Configuration configuration) {
+      this.resultObject = resultObject;
+      this.property = property;
+      this.resultLoader = resultLoader;
+      this.configuration = configuration;
+    }
+
+    public void load() throws SQLException {
+      Object value = resultLoader.loadResult();
+      if (value != null || (configuration.isCallSettersOnNulls() && !resultObject.getSetterType(property).isPrimitive())) {
+        resultObject.setValue(property, value);
+      }
+    }
+
+  }
+
 }
@@ -17,19 +17,38 @@ package org.apache.ibatis.executor;
 
 import java.sql.BatchUpdateException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
+import javax.sql.DataSource;
+
+import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.executor.keygen.NoKeyGenerator;
 import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.logging.jdbc.ConnectionLogger;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.scripting.defaults.DefaultParameterHandler;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
@@ -42,8 +61,17 @@ public class BatchExecutor extends BaseExecutor {
 
   public static final int BATCH_UPDATE_RETURN_VALUE = Integer.MIN_VALUE + 1002;
 
+  private static final long ROW_OVERHEAD_BYTES = 64;
+  private static final long VALUE_OVERHEAD_BYTES = 24;
+
   private final List<Statement> statementList = new ArrayList<>();
   private final List<BatchResult> batchResultList = new ArrayList<>();
+  private final Map<CacheKey, Integer> statementIndexes = new HashMap<>();
+  private final Map<BatchResult, MultiRowInsert> multiRowInserts = new IdentityHashMap<>();
+  private final Map<BatchResult, List<BoundSql>> deferredRows = new IdentityHashMap<>();
+  private final List<BatchResult> flushedResultList = new ArrayList<>();
+  private int pendingRows;
+  private long pendingBytes;
   private String currentSql;
   private MappedStatement currentStatement;
 
@@ -57,27 +85,121 @@ public class BatchExecutor extends BaseExecutor {
     final StatementHandler handler = configuration.newStatementHandler(this, ms, parameterObject, RowBounds.DEFAULT, null, null);
     final BoundSql boundSql = handler.getBoundSql();
     final String sql = boundSql.getSql();
-    final Statement stmt;
-    if (sql.equals(currentSql) && ms.equals(currentStatement)) {
-      int last = statementList.size() - 1;
-      stmt = statementList.get(last);
-      applyTransactionTimeout(stmt);
-      handler.parameterize(stmt);//fix Issues 322
-      BatchResult batchResult = batchResultList.get(last);
+    final BatchResult batchResult;
+    final int index = indexOfStatement(ms, sql);
+    if (index >= 0) {
+      batchResult = batchResultList.get(index);
       batchResult.addParameterObject(parameterObject);
+      MultiRowInsert insert = multiRowInserts.get(batchResult);
+      List<BoundSql> rows = deferredRows.get(batchResult);
+      if (insert != null) {
+        insert.addRow(boundSql);
+      } else if (rows != null) {
+        rows.add(boundSql);
+      } else {
+        Statement stmt = statementList.get(index);
+        applyTransactionTimeout(stmt);
+        handler.parameterize(stmt);//fix Issues 322
+        handler.batch(stmt);
+      }
     } else {
-      Connection connection = getConnection(ms.getStatementLog());
-      stmt = handler.prepare(connection, transaction.getTimeout());
-      handler.parameterize(stmt);    //fix Issues 322
+      batchResult = new BatchResult(ms, sql, parameterObject);
+      MultiRowInsert insert = isRewritable(ms) ? MultiRowInsert.parse(sql) : null;
+      Statement stmt = null;
+      if (insert != null) {
+        insert.addRow(boundSql);
+        multiRowInserts.put(batchResult, insert);
+      } else if (isParallelizable(ms)) {
+        List<BoundSql> rows = new ArrayList<>();
+        rows.add(boundSql);
+        deferredRows.put(batchResult, rows);
+      } else {
+        Connection connection = getConnection(ms.getStatementLog());
+        stmt = handler.prepare(connection, transaction.getTimeout());
+        handler.parameterize(stmt);    //fix Issues 322
+        handler.batch(stmt);
+      }
       currentSql = sql;
       currentStatement = ms;
+      if (configuration.isBatchGroupingEnabled()) {
+        statementIndexes.put(groupKey(ms, sql), statementList.size());
+      }
       statementList.add(stmt);
-      batchResultList.add(new BatchResult(ms, sql, parameterObject));
+      batchResultList.add(batchResult);
+    }
+    pendingRows++;
+    if (configuration.getBatchFlushPendingBytes() != null) {
+      pendingBytes += estimateRetainedBytes(boundSql);
+    }
+    if (isFlushThresholdReached(batchResult)) {
+      executeBatches(flushedResultList);
     }
-    handler.batch(stmt);
     return BATCH_UPDATE_RETURN_VALUE;
   }
 
+  private boolean isRewritable(MappedStatement ms) {
+    return configuration.getBatchInsertRewriteRows() != null && ms.getSqlCommandType() == SqlCommandType.INSERT
+        && ms.getStatementType() == StatementType.PREPARED && !hasSelectKey(ms);
+  }
+
+  private boolean isParallelizable(MappedStatement ms) {
+    return configuration.getBatchFlushThreads() != null && !hasSelectKey(ms);
+  }
+
+  private boolean hasSelectKey(MappedStatement ms) {
+    // a select key runs on the session connection and could not tell the generated keys of the rows apart
+    Class<?> keyGeneratorType = ms.getKeyGenerator().getClass();
+    return !Jdbc3KeyGenerator.class.equals(keyGeneratorType) && !NoKeyGenerator.class.equals(keyGeneratorType);
+  }
+
+  private boolean isFlushThresholdReached(BatchResult batchResult) {
+    Integer rowsPerStatement = configuration.getBatchFlushRowsPerStatement();
+    Integer maxPendingRows = configuration.getBatchFlushPendingRows();
+    Long maxPendingBytes = configuration.getBatchFlushPendingBytes();
+    return rowsPerStatement != null && batchResult.getParameterObjects().size() >= rowsPerStatement
+        || maxPendingRows != null && pendingRows >= maxPendingRows
+        || maxPendingBytes != null && pendingBytes >= maxPendingBytes;
+  }
+
+  /**
+   * Roughly estimates the memory held by the parameter values bound to a batched row.
+   */
+  private long estimateRetainedBytes(BoundSql boundSql) {
+    long bytes = ROW_OVERHEAD_BYTES;
+    for (ParameterMapping parameterMapping : boundSql.getParameterMappings()) {
+      if (parameterMapping.getMode() == ParameterMode.OUT) {
+        continue;
+      }
+      Object value = DefaultParameterHandler.getParameterValue(configuration, boundSql, boundSql.getParameterObject(),
+          parameterMapping);
+      if (value instanceof CharSequence) {
+        bytes += VALUE_OVERHEAD_BYTES + 2L * ((CharSequence) value).length();
+      } else if (value instanceof byte[]) {
+        bytes += VALUE_OVERHEAD_BYTES + ((byte[]) value).length;
+      } else if (value instanceof char[]) {
+        bytes += VALUE_OVERHEAD_BYTES + 2L * ((char[]) value).length;
+      } else {
+        bytes += VALUE_OVERHEAD_BYTES;
+      }
+    }
+    return bytes;
+  }
+
+  private int indexOfStatement(MappedStatement ms, String sql) {
+    if (configuration.isBatchGroupingEnabled()) {
+      Integer index = statementIndexes.get(groupKey(ms, sql));
+      return index == null ? -1 : index;
+    }
+    return sql.equals(currentSql) && ms.equals(currentStatement) ? statementList.size() - 1 : -1;
+  }
+
+  private CacheKey groupKey(MappedStatement ms, String sql) {
+    CacheKey key = new CacheKey();
+    key.update(ms);
+    key.update(sql);
+    return key;
+  }
+
   @Override
   public <E> List<E> doQuery(MappedStatement ms, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql)
       throws SQLException {
@@ -110,54 +232,327 @@ public class BatchExecutor extends BaseExecutor {
   @Override
   public List<BatchResult> doFlushStatements(boolean isRollback) throws SQLException {
     try {
-      List<BatchResult> results = new ArrayList<>();
       if (isRollback) {
+        closeStatements();
         return Collections.emptyList();
       }
-      for (int i = 0, n = statementList.size(); i < n; i++) {
-        Statement stmt = statementList.get(i);
-        applyTransactionTimeout(stmt);
+      List<BatchResult> results = new ArrayList<>(flushedResultList);
+      executeBatches(results);
+      return results;
+    } finally {
+      flushedResultList.clear();
+    }
+  }
+
+  /**
+   * Executes the pending batches and appends their results.
+   *
+   * @param results the results of the batches already executed since the last flush
+   */
+  private void executeBatches(List<BatchResult> results) throws SQLException {
+    try {
+      if (configuration.getBatchFlushThreads() != null && !batchResultList.isEmpty()) {
+        executeBatchesInParallel(results);
+        return;
+      }
+      for (int i = 0, n = batchResultList.size(); i < n; i++) {
         BatchResult batchResult = batchResultList.get(i);
         try {
-          batchResult.setUpdateCounts(stmt.executeBatch());
+          executeBatch(statementList.get(i), batchResult);
+        } catch (BatchUpdateException e) {
+          throw batchExecutorException(e, results, batchResult);
+        }
+        results.add(batchResult);
+      }
+    } finally {
+      closeStatements();
+    }
+  }
+
+  private void executeBatch(Statement stmt, BatchResult batchResult) throws SQLException {
+    MultiRowInsert insert = multiRowInserts.get(batchResult);
+    if (insert != null) {
+      executeMultiRowInsert(getConnection(batchResult.getMappedStatement().getStatementLog()), batchResult, insert);
+    } else {
+      applyTransactionTimeout(stmt);
+      batchResult.setUpdateCounts(stmt.executeBatch());
+      processGeneratedKeys(batchResult.getMappedStatement(), stmt, batchResult.getParameterObjects());
+      // Close statement to close cursor #1109
+      closeStatement(stmt);
+    }
+  }
+
+  private BatchExecutorException batchExecutorException(BatchUpdateException e, List<BatchResult> results, BatchResult batchResult) {
+    StringBuilder message = new StringBuilder();
+    message.append(batchResult.getMappedStatement().getId())
+        .append(" (batch index #")
+        .append(results.size() + 1)
+        .append(")")
+        .append(" failed.");
+    if (!results.isEmpty()) {
+      message.append(" ")
+          .append(results.size())
+          .append(" prior sub executor(s) completed successfully, but will be rolled back.");
+    }
+    return new BatchExecutorException(message.toString(), e, new ArrayList<>(results), batchResult);
+  }
+
+  /**
+   * Runs the batches of each mapped statement on a separate connection of the environment data source,
+   * on the {@link Configuration#getBatchFlushExecutor() batch flush executor}.
+   * Every connection commits its own batches once they all succeeded, or rolls them back, independently of the
+   * session transaction. Batches of statements using a select key run on the session connection in the meantime.
+   * The flush waits for every partition to complete before reporting a failure, so that none is left half done.
+   */
+  private void executeBatchesInParallel(List<BatchResult> results) throws SQLException {
+    if (configuration.getEnvironment() == null || configuration.getEnvironment().getDataSource() == null) {
+      throw new ExecutorException("Flushing batches in parallel requires an environment with a data source.");
+    }
+    DataSource dataSource = configuration.getEnvironment().getDataSource();
+    Map<MappedStatement, List<BatchResult>> partitions = new LinkedHashMap<>();
+    List<BatchResult> sessionPartition = new ArrayList<>();
+    for (int i = 0, n = batchResultList.size(); i < n; i++) {
+      BatchResult batchResult = batchResultList.get(i);
+      if (statementList.get(i) == null) {
+        partitions.computeIfAbsent(batchResult.getMappedStatement(), k -> new ArrayList<>()).add(batchResult);
+      } else {
+        sessionPartition.add(batchResult);
+      }
+    }
+    if (!partitions.isEmpty()) {
+      checkFreeConnections(dataSource);
+    }
+    Set<BatchResult> failedPartitions = Collections.newSetFromMap(new IdentityHashMap<>());
+    BatchExecutorException failure = null;
+    Throwable error = null;
+    Map<List<BatchResult>, Future<?>> futures = new LinkedHashMap<>();
+    for (List<BatchResult> partition : partitions.values()) {
+      futures.put(partition, configuration.getBatchFlushExecutor().submit(() -> {
+        executePartition(dataSource, partition);
+        return null;
+      }));
+    }
+    BatchResult current = null;
+    try {
+      for (BatchResult batchResult : sessionPartition) {
+        current = batchResult;
+        executeBatch(statementList.get(indexOfBatch(batchResult)), batchResult);
+      }
+    } catch (BatchUpdateException e) {
+      failure = new BatchExecutorException(current.getMappedStatement().getId() + " failed.", e,
+          Collections.emptyList(), current);
+      failedPartitions.addAll(sessionPartition);
+    } catch (SQLException | RuntimeException e) {
+      error = e;
+      failedPartitions.addAll(sessionPartition);
+    }
+    for (Map.Entry<List<BatchResult>, Future<?>> entry : futures.entrySet()) {
+      Throwable cause = awaitPartition(entry.getValue());
+      if (cause == null) {
+        continue;
+      }
+      failedPartitions.addAll(entry.getKey());
+      if (cause instanceof BatchExecutorException && failure == null) {
+        failure = (BatchExecutorException) cause;
+      } else if (!(cause instanceof BatchExecutorException) && error == null) {
+        error = cause;
+      } else {
+        (error != null ? error : failure).addSuppressed(cause);
+      }
+    }
+    if (error != null) {
+      if (failure != null) {
+        error.addSuppressed(failure);
+      }
+      if (error instanceof SQLException) {
+        throw (SQLException) error;
+      } else if (error instanceof RuntimeException) {
+        throw (RuntimeException) error;
+      }
+      throw new ExecutorException("Error flushing batches in parallel. Cause: " + error, error);
+    }
+    for (BatchResult batchResult : batchResultList) {
+      if (!failedPartitions.contains(batchResult)) {
+        results.add(batchResult);
+      }
+    }
+    if (failure != null) {
+      BatchExecutorException aggregated = new BatchExecutorException(failure.getFailingStatementId() + " failed. "
+          + results.size() + " batch(es) of other statements completed, those on separate connections are committed.",
+          failure.getBatchUpdateException(), new ArrayList<>(results), failure.getFailingBatchResult());
+      for (Throwable suppressed : failure.getSuppressed()) {
+        aggregated.addSuppressed(suppressed);
+      }
+      throw aggregated;
+    }
+  }
+
+  /**
+   * Fails before taking any connection if the workers could exhaust a {@link PooledDataSource}, which would make
+   * them wait for the connection held by this session, or claim it as overdue.
+   */
+  private void checkFreeConnections(DataSource dataSource) {
+    if (!(dataSource instanceof PooledDataSource)) {
+      return;
+    }
+    PooledDataSource pooledDataSource = (PooledDataSource) dataSource;
+    int freeConnections = pooledDataSource.getPoolMaximumActiveConnections()
+        - pooledDataSource.getPoolState().getActiveConnectionCount();
+    if (configuration.getBatchFlushThreads() >= freeConnections) {
+      throw new ExecutorException("Cannot flush batches in parallel with " + configuration.getBatchFlushThreads()
+          + " threads, the pool only has " + freeConnections + " free connection(s) left.");
+    }
+  }
+
+  /**
+   * Waits for a partition to complete, even if interrupted, as its connection is only released at the end.
+   *
+   * @return The failure of the partition, or null if it succeeded
+   */
+  private Throwable awaitPartition(Future<?> future) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          future.get();
+          return null;
+        } catch (ExecutionException e) {
+          return e.getCause();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private int indexOfBatch(BatchResult batchResult) {
+    for (int i = 0, n = batchResultList.size(); i < n; i++) {
+      if (batchResultList.get(i) == batchResult) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private void executePartition(DataSource dataSource, List<BatchResult> partition) throws SQLException {
+    try (Connection connection = dataSource.getConnection()) {
+      // the connection goes back to its pool afterwards, so its auto-commit mode is restored
+      boolean autoCommit = connection.getAutoCommit();
+      connection.setAutoCommit(false);
+      try {
+        for (BatchResult batchResult : partition) {
           MappedStatement ms = batchResult.getMappedStatement();
-          List<Object> parameterObjects = batchResult.getParameterObjects();
-          KeyGenerator keyGenerator = ms.getKeyGenerator();
-          if (Jdbc3KeyGenerator.class.equals(keyGenerator.getClass())) {
-            Jdbc3KeyGenerator jdbc3KeyGenerator = (Jdbc3KeyGenerator) keyGenerator;
-            jdbc3KeyGenerator.processBatch(ms, stmt, parameterObjects);
-          } else if (!NoKeyGenerator.class.equals(keyGenerator.getClass())) { //issue #141
-            for (Object parameter : parameterObjects) {
-              keyGenerator.processAfter(this, ms, stmt, parameter);
+          Connection loggedConnection = ms.getStatementLog().isDebugEnabled()
+              ? ConnectionLogger.newInstance(connection, ms.getStatementLog(), queryStack) : connection;
+          try {
+            MultiRowInsert insert = multiRowInserts.get(batchResult);
+            if (insert != null) {
+              executeMultiRowInsert(loggedConnection, batchResult, insert);
+            } else {
+              executeDeferredBatch(loggedConnection, batchResult, deferredRows.get(batchResult));
             }
+          } catch (BatchUpdateException e) {
+            throw new BatchExecutorException(ms.getId() + " failed.", e, Collections.emptyList(), batchResult);
           }
-          // Close statement to close cursor #1109
+        }
+        connection.commit();
+      } catch (SQLException | RuntimeException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(autoCommit);
+      }
+    }
+  }
+
+  private void executeDeferredBatch(Connection connection, BatchResult batchResult, List<BoundSql> rows) throws SQLException {
+    MappedStatement ms = batchResult.getMappedStatement();
+    List<Object> parameterObjects = batchResult.getParameterObjects();
+    Statement stmt = null;
+    try {
+      for (int i = 0; i < rows.size(); i++) {
+        StatementHandler handler = configuration.newStatementHandler(this, ms, parameterObjects.get(i), RowBounds.DEFAULT, null, rows.get(i));
+        if (stmt == null) {
+          stmt = handler.prepare(connection, transaction.getTimeout());
+        }
+        handler.parameterize(stmt);
+        handler.batch(stmt);
+      }
+      batchResult.setUpdateCounts(stmt.executeBatch());
+      processGeneratedKeys(ms, stmt, parameterObjects);
+    } finally {
+      closeStatement(stmt);
+    }
+  }
+
+  /**
+   * Inserts the rows in chunks of {@link Configuration#getBatchInsertRewriteRows()}.
+   * Each row is reported with an update count of 1, or {@link Statement#SUCCESS_NO_INFO} when the count of its chunk
+   * does not match the number of rows.
+   */
+  private void executeMultiRowInsert(Connection connection, BatchResult batchResult, MultiRowInsert insert) throws SQLException {
+    MappedStatement ms = batchResult.getMappedStatement();
+    List<Object> parameterObjects = batchResult.getParameterObjects();
+    int rowCount = insert.getRowCount();
+    int chunkSize = Math.max(1, configuration.getBatchInsertRewriteRows());
+    int[] updateCounts = new int[rowCount];
+    Statement stmt = null;
+    int stmtRows = 0;
+    try {
+      for (int from = 0; from < rowCount; from += chunkSize) {
+        int to = Math.min(from + chunkSize, rowCount);
+        List<Object> chunk = parameterObjects.subList(from, to);
+        BoundSql boundSql = insert.bind(configuration, from, to, new ArrayList<>(chunk));
+        StatementHandler handler = configuration.newStatementHandler(this, ms, boundSql.getParameterObject(), RowBounds.DEFAULT, null, boundSql);
+        if (stmt == null || stmtRows != to - from) {
           closeStatement(stmt);
-        } catch (BatchUpdateException e) {
-          StringBuilder message = new StringBuilder();
-          message.append(batchResult.getMappedStatement().getId())
-              .append(" (batch index #")
-              .append(i + 1)
-              .append(")")
-              .append(" failed.");
-          if (i > 0) {
-            message.append(" ")
-                .append(i)
-                .append(" prior sub executor(s) completed successfully, but will be rolled back.");
-          }
-          throw new BatchExecutorException(message.toString(), e, results, batchResult);
+          stmt = handler.prepare(connection, transaction.getTimeout());
+          stmtRows = to - from;
         }
-        results.add(batchResult);
+        handler.parameterize(stmt);
+        int count;
+        try {
+          count = ((PreparedStatement) stmt).executeUpdate();
+        } catch (SQLException e) {
+          throw new BatchUpdateException(e.getMessage(), e.getSQLState(), e.getErrorCode(), Arrays.copyOf(updateCounts, from), e);
+        }
+        Arrays.fill(updateCounts, from, to, count == to - from ? 1 : Statement.SUCCESS_NO_INFO);
+        processGeneratedKeys(ms, stmt, new ArrayList<>(chunk));
       }
-      return results;
     } finally {
-      for (Statement stmt : statementList) {
-        closeStatement(stmt);
+      closeStatement(stmt);
+    }
+    batchResult.setUpdateCounts(updateCounts);
+  }
+
+  private void processGeneratedKeys(MappedStatement ms, Statement stmt, List<Object> parameterObjects) {
+    KeyGenerator keyGenerator = ms.getKeyGenerator();
+    if (Jdbc3KeyGenerator.class.equals(keyGenerator.getClass())) {
+      Jdbc3KeyGenerator jdbc3KeyGenerator = (Jdbc3KeyGenerator) keyGenerator;
+      jdbc3KeyGenerator.processBatch(ms, stmt, parameterObjects);
+    } else if (!NoKeyGenerator.class.equals(keyGenerator.getClass())) { //issue #141
+      for (Object parameter : parameterObjects) {
+        keyGenerator.processAfter(this, ms, stmt, parameter);
       }
-      currentSql = null;
-      statementList.clear();
-      batchResultList.clear();
     }
   }
 
+  private void closeStatements() {
+    for (Statement stmt : statementList) {
+      closeStatement(stmt);
+    }
+    currentSql = null;
+    statementIndexes.clear();
+    multiRowInserts.clear();
+    deferredRows.clear();
+    statementList.clear();
+    batchResultList.clear();
+    pendingRows = 0;
+    pendingBytes = 0;
+  }
+
 }
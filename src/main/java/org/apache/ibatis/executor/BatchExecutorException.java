@@ -85,4 +85,8 @@ public class BatchExecutorException extends ExecutorException {
   public String getFailingStatementId() {
     return batchResult.getMappedStatement().getId();
   }
+
+  BatchResult getFailingBatchResult() {
+    return batchResult;
+  }
 }
@@ -24,6 +24,7 @@ import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.cache.TransactionalCacheManager;
 import org.apache.ibatis.cache.decorators.TransactionalCache;
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.loader.ResultLoader;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMapping;
@@ -184,6 +185,11 @@ public class CachingExecutor implements Executor {
     delegate.deferLoad(ms, resultObject, property, key, targetType);
   }
 
+  @Override
+  public void deferLoad(MetaObject resultObject, String property, ResultLoader resultLoader) throws SQLException {
+    delegate.deferLoad(resultObject, property, resultLoader);
+  }
+
   @Override
   public void clearLocalCache() {
     delegate.clearLocalCache();
@@ -20,6 +20,7 @@ import java.util.List;
 
 import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.loader.ResultLoader;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.reflection.MetaObject;
@@ -56,6 +57,20 @@ public interface Executor {
 
   void deferLoad(MappedStatement ms, MetaObject resultObject, String property, CacheKey key, Class<?> targetType);
 
+  /**
+   * Defers loading a nested query until the outermost query completes, so that the nested queries of all its rows can
+   * be loaded together. Executors that cannot defer it load the result right away.
+   *
+   * @param resultObject the object to set the result to
+   * @param property the property to set the result to
+   * @param resultLoader the loader of the result
+   * @throws SQLException if the result is loaded right away and the query fails
+   * @since 3.5.3
+   */
+  default void deferLoad(MetaObject resultObject, String property, ResultLoader resultLoader) throws SQLException {
+    resultObject.setValue(property, resultLoader.loadResult());
+  }
+
   Transaction getTransaction();
 
   void close(boolean forceRollback);
@@ -0,0 +1,123 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.scripting.defaults.DefaultParameterHandler;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * The rows of a single row {@code INSERT ... VALUES (...)} batched by the {@link BatchExecutor}, to be sent as
+ * {@code INSERT ... VALUES (...), (...)} statements instead of a JDBC batch.
+ */
+class MultiRowInsert {
+
+  private static final Pattern INSERT_VALUES = Pattern.compile("^\\s*(INSERT\\s+INTO\\s.+?\\bVALUES)\\s*(\\(.*\\))\\s*$",
+      Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+  private final String prefix;
+  private final String tuple;
+  private final List<BoundSql> rows = new ArrayList<>();
+
+  private MultiRowInsert(String prefix, String tuple) {
+    this.prefix = prefix;
+    this.tuple = tuple;
+  }
+
+  /**
+   * @param sql the SQL of an insert statement
+   * @return A multi-row insert for the SQL, or null if it does not insert a single {@code VALUES} row
+   */
+  static MultiRowInsert parse(String sql) {
+    Matcher matcher = INSERT_VALUES.matcher(sql);
+    if (!matcher.matches() || !isSingleTuple(matcher.group(2))) {
+      return null;
+    }
+    return new MultiRowInsert(matcher.group(1), matcher.group(2));
+  }
+
+  private static boolean isSingleTuple(String tuple) {
+    int depth = 0;
+    boolean quoted = false;
+    for (int i = 0; i < tuple.length(); i++) {
+      char c = tuple.charAt(i);
+      if (c == '\'') {
+        quoted = !quoted;
+      } else if (!quoted && c == '(') {
+        depth++;
+      } else if (!quoted && c == ')') {
+        depth--;
+        if (depth == 0 && i < tuple.length() - 1) {
+          return false;
+        }
+      }
+    }
+    return depth == 0 && !quoted;
+  }
+
+  public void addRow(BoundSql boundSql) {
+    rows.add(boundSql);
+  }
+
+  public int getRowCount() {
+    return rows.size();
+  }
+
+  /**
+   * Binds a range of rows to one statement.
+   * The parameter values of each row are resolved up front and passed as additional parameters,
+   * so the statement can be parameterized by the usual {@link org.apache.ibatis.executor.parameter.ParameterHandler}.
+   *
+   * @param configuration the configuration
+   * @param from the index of the first row, inclusive
+   * @param to the index of the last row, exclusive
+   * @param parameterObjects the parameter objects of the rows
+   * @return The bound SQL inserting the rows
+   */
+  public BoundSql bind(Configuration configuration, int from, int to, List<Object> parameterObjects) {
+    StringBuilder sql = new StringBuilder(prefix.length() + (tuple.length() + 1) * (to - from) + 1);
+    sql.append(prefix).append(' ');
+    List<ParameterMapping> parameterMappings = new ArrayList<>();
+    List<Object> values = new ArrayList<>();
+    for (int row = from; row < to; row++) {
+      if (row > from) {
+        sql.append(',');
+      }
+      sql.append(tuple);
+      BoundSql boundSql = rows.get(row);
+      for (ParameterMapping parameterMapping : boundSql.getParameterMappings()) {
+        parameterMappings.add(DefaultParameterHandler.batchParameterMapping(configuration, parameterMapping,
+            parameterMappings.size()));
+        values.add(parameterMapping.getMode() == ParameterMode.OUT ? null
+            : DefaultParameterHandler.getParameterValue(configuration, boundSql, boundSql.getParameterObject(),
+                parameterMapping));
+      }
+    }
+    BoundSql boundSql = new BoundSql(configuration, sql.toString(), parameterMappings, parameterObjects);
+    for (int i = 0; i < parameterMappings.size(); i++) {
+      boundSql.setAdditionalParameter(parameterMappings.get(i).getProperty(), values.get(i));
+    }
+    return boundSql;
+  }
+
+}
@@ -0,0 +1,266 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.reflection.MetaClass;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.scripting.defaults.DefaultParameterHandler;
+import org.apache.ibatis.session.AutoMappingBehavior;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * A {@link ResultLoader} loaded together with the other pending loaders of its {@link Batch}.
+ * <p>
+ * When the nested statement ends in {@code WHERE column = ?}, the first loader to be loaded runs it once per chunk of
+ * keys as {@code WHERE column IN (?, ?, ...)}, and hands every pending loader the rows whose mapped key property
+ * matches its parameter. Loaders whose statement cannot be rewritten that way, or whose rows cannot be matched back
+ * to their keys, are loaded one by one as usual.
+ *
+ * @since 3.5.3
+ */
+public class BatchResultLoader extends ResultLoader {
+
+  private final Batch batch;
+
+  public BatchResultLoader(Batch batch, Configuration config, Executor executor, MappedStatement mappedStatement, Object parameterObject,
+      Class<?> targetType, CacheKey cacheKey, BoundSql boundSql) {
+    super(config, executor, mappedStatement, parameterObject, targetType, cacheKey, boundSql);
+    this.batch = batch;
+    batch.add(this);
+  }
+
+  @Override
+  public Object loadResult() throws SQLException {
+    batch.load(this);
+    if (loaded) {
+      return resultObject;
+    }
+    return super.loadResult();
+  }
+
+  /**
+   * The pending loaders of one nested statement, e.g. of all the objects mapped from one result set.
+   */
+  public static class Batch {
+
+    private static final Pattern WHERE_KEY = Pattern.compile("^(.*\\bWHERE\\s+)([\\w.]+)\\s*=\\s*\\?\\s*$",
+        Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private final int size;
+    private List<BatchResultLoader> pending = new ArrayList<>();
+
+    /**
+     * @param size the maximum number of keys queried at once
+     */
+    public Batch(int size) {
+      if (size < 1) {
+        throw new IllegalArgumentException("The batch size must be positive, but was " + size);
+      }
+      this.size = size;
+    }
+
+    synchronized void add(BatchResultLoader loader) {
+      pending.add(loader);
+    }
+
+    synchronized void load(BatchResultLoader trigger) throws SQLException {
+      if (pending.isEmpty()) {
+        return;
+      }
+      List<BatchResultLoader> loaders = pending;
+      pending = new ArrayList<>();
+      Map<String, List<BatchResultLoader>> loadersBySql = new LinkedHashMap<>();
+      for (BatchResultLoader loader : loaders) {
+        if (!loader.loaded && loader.boundSql != null) {
+          loadersBySql.computeIfAbsent(loader.boundSql.getSql(), sql -> new ArrayList<>()).add(loader);
+        }
+      }
+      for (Map.Entry<String, List<BatchResultLoader>> entry : loadersBySql.entrySet()) {
+        load(trigger, entry.getKey(), entry.getValue());
+      }
+    }
+
+    private void load(BatchResultLoader trigger, String sql, List<BatchResultLoader> loaders) throws SQLException {
+      Matcher matcher = WHERE_KEY.matcher(sql);
+      ParameterMapping parameterMapping = parameterMappingOf(loaders.get(0).boundSql);
+      if (!matcher.matches() || parameterMapping == null) {
+        return;
+      }
+      String keyProperty = keyProperty(trigger.configuration, trigger.mappedStatement, matcher.group(2));
+      if (keyProperty == null) {
+        return;
+      }
+      Map<Object, Object> keyValues = new LinkedHashMap<>();
+      Map<Object, List<BatchResultLoader>> loadersByKey = new LinkedHashMap<>();
+      for (BatchResultLoader loader : loaders) {
+        Object value = DefaultParameterHandler.getParameterValue(loader.configuration, loader.boundSql,
+            loader.boundSql.getParameterObject(), parameterMapping);
+        if (value != null) {
+          Object key = normalize(value);
+          keyValues.putIfAbsent(key, value);
+          loadersByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(loader);
+        }
+      }
+      List<Object> keys = new ArrayList<>(keyValues.keySet());
+      for (int from = 0; from < keys.size(); from += size) {
+        List<Object> chunk = keys.subList(from, Math.min(from + size, keys.size()));
+        List<Object> values = new ArrayList<>(chunk.size());
+        for (Object key : chunk) {
+          values.add(keyValues.get(key));
+        }
+        BoundSql boundSql = bind(trigger.configuration, matcher.group(1) + matcher.group(2), parameterMapping, values,
+            trigger.parameterObject);
+        List<Object> rows = trigger.selectList(trigger.parameterObject, boundSql);
+        Map<Object, List<Object>> rowsByKey = groupByKey(trigger.configuration, rows, keyProperty, chunk);
+        if (rowsByKey == null) {
+          // the rows cannot be told apart, leave the loaders to load one by one
+          continue;
+        }
+        for (Object key : chunk) {
+          List<Object> keyRows = rowsByKey.getOrDefault(key, new ArrayList<>());
+          for (BatchResultLoader loader : loadersByKey.get(key)) {
+            try {
+              loader.resultObject = loader.resultExtractor.extractObjectFromList(keyRows, loader.targetType);
+              loader.loaded = true;
+            } catch (ExecutorException e) {
+              // too many rows for a single object, let the loader fail when it is accessed itself
+            }
+          }
+        }
+      }
+    }
+
+    private static ParameterMapping parameterMappingOf(BoundSql boundSql) {
+      List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+      if (parameterMappings.size() != 1 || parameterMappings.get(0).getMode() != ParameterMode.IN) {
+        return null;
+      }
+      return parameterMappings.get(0);
+    }
+
+    /**
+     * Finds the property the rows of the statement map the key column to.
+     */
+    private static String keyProperty(Configuration configuration, MappedStatement mappedStatement, String column) {
+      column = column.substring(column.lastIndexOf('.') + 1);
+      List<ResultMap> resultMaps = mappedStatement.getResultMaps();
+      if (resultMaps.size() != 1) {
+        return null;
+      }
+      ResultMap resultMap = resultMaps.get(0);
+      Class<?> type = resultMap.getType();
+      if (Map.class.isAssignableFrom(type) || configuration.getTypeHandlerRegistry().hasTypeHandler(type)) {
+        return null;
+      }
+      for (ResultMapping resultMapping : resultMap.getPropertyResultMappings()) {
+        if (column.equalsIgnoreCase(resultMapping.getColumn()) && resultMapping.getNestedQueryId() == null
+            && resultMapping.getNestedResultMapId() == null) {
+          return resultMapping.getProperty();
+        }
+      }
+      boolean autoMapping = resultMap.getAutoMapping() != null ? resultMap.getAutoMapping()
+          : configuration.getAutoMappingBehavior() == AutoMappingBehavior.FULL
+          || configuration.getAutoMappingBehavior() == AutoMappingBehavior.PARTIAL && !resultMap.hasNestedResultMaps();
+      if (!autoMapping || resultMap.getMappedColumns().contains(column.toUpperCase(Locale.ENGLISH))) {
+        return null;
+      }
+      return MetaClass.forClass(type, configuration.getReflectorFactory())
+          .findProperty(column, configuration.isMapUnderscoreToCamelCase());
+    }
+
+    private static BoundSql bind(Configuration configuration, String sql, ParameterMapping parameterMapping, List<Object> values,
+        Object parameterObject) {
+      StringBuilder in = new StringBuilder(sql.length() + values.size() * 2 + 4).append(sql).append(" IN (");
+      List<ParameterMapping> parameterMappings = new ArrayList<>(values.size());
+      for (int i = 0; i < values.size(); i++) {
+        in.append(i == 0 ? "?" : ", ?");
+        parameterMappings.add(DefaultParameterHandler.batchParameterMapping(configuration, parameterMapping, i));
+      }
+      in.append(')');
+      BoundSql boundSql = new BoundSql(configuration, in.toString(), parameterMappings, parameterObject);
+      for (int i = 0; i < values.size(); i++) {
+        boundSql.setAdditionalParameter(parameterMappings.get(i).getProperty(), values.get(i));
+      }
+      return boundSql;
+    }
+
+    /**
+     * @return The rows by key, or null if a row has a key that was not asked for
+     */
+    private static Map<Object, List<Object>> groupByKey(Configuration configuration, List<Object> rows, String keyProperty,
+        List<Object> keys) {
+      if (rows.isEmpty()) {
+        return Collections.emptyMap();
+      }
+      Map<Object, List<Object>> rowsByKey = new LinkedHashMap<>();
+      for (Object key : keys) {
+        rowsByKey.put(key, new ArrayList<>());
+      }
+      for (Object row : rows) {
+        if (row == null) {
+          return null;
+        }
+        MetaObject metaObject = configuration.newMetaObject(row);
+        if (!metaObject.hasGetter(keyProperty)) {
+          return null;
+        }
+        Object value = metaObject.getValue(keyProperty);
+        List<Object> keyRows = value == null ? null : rowsByKey.get(normalize(value));
+        if (keyRows == null) {
+          return null;
+        }
+        keyRows.add(row);
+      }
+      return rowsByKey;
+    }
+
+    /**
+     * Makes keys of different numeric types, e.g. an {@code Integer} parameter and a {@code Long} property, equal.
+     */
+    private static Object normalize(Object key) {
+      if (key instanceof Number) {
+        try {
+          return new BigDecimal(key.toString()).stripTrailingZeros();
+        } catch (NumberFormatException e) {
+          return key;
+        }
+      }
+      return key;
+    }
+
+  }
+
+}
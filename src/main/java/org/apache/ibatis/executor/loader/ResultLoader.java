@@ -73,10 +73,7 @@ public class ResultLoader {
   }
 
   private <E> List<E> selectList() throws SQLException {
-    Executor localExecutor = executor;
-    if (Thread.currentThread().getId() != this.creatorThreadId || localExecutor.isClosed()) {
-      localExecutor = newExecutor();
-    }
+    Executor localExecutor = localExecutor();
     try {
       return localExecutor.query(mappedStatement, parameterObject, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER, cacheKey, boundSql);
     } finally {
@@ -86,6 +83,34 @@ public class ResultLoader {
     }
   }
 
+  /**
+   * Runs the mapped statement of this loader with another SQL, e.g. to load the results of several loaders at once.
+   *
+   * @param parameterObject the parameter object
+   * @param boundSql the SQL to run instead of the one of this loader
+   * @return The results
+   * @throws SQLException if the statement fails
+   * @since 3.5.3
+   */
+  protected <E> List<E> selectList(Object parameterObject, BoundSql boundSql) throws SQLException {
+    Executor localExecutor = localExecutor();
+    try {
+      CacheKey key = localExecutor.createCacheKey(mappedStatement, parameterObject, RowBounds.DEFAULT, boundSql);
+      return localExecutor.query(mappedStatement, parameterObject, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER, key, boundSql);
+    } finally {
+      if (localExecutor != executor) {
+        localExecutor.close(false);
+      }
+    }
+  }
+
+  private Executor localExecutor() {
+    if (Thread.currentThread().getId() != this.creatorThreadId || executor.isClosed()) {
+      return newExecutor();
+    }
+    return executor;
+  }
+
   private Executor newExecutor() {
     final Environment environment = configuration.getEnvironment();
     if (environment == null) {
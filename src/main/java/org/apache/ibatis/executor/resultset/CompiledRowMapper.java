@@ -0,0 +1,433 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.apache.ibatis.executor.result.ResultMapException;
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.reflection.ReflectionException;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.invoker.AmbiguousMethodInvoker;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.reflection.invoker.MethodInvoker;
+import org.apache.ibatis.reflection.invoker.SetFieldInvoker;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.BooleanTypeHandler;
+import org.apache.ibatis.type.ByteTypeHandler;
+import org.apache.ibatis.type.DoubleTypeHandler;
+import org.apache.ibatis.type.FloatTypeHandler;
+import org.apache.ibatis.type.IntegerTypeHandler;
+import org.apache.ibatis.type.LongTypeHandler;
+import org.apache.ibatis.type.PrimitiveTypeHandler;
+import org.apache.ibatis.type.ShortTypeHandler;
+import org.apache.ibatis.type.TypeHandler;
+
+/**
+ * Maps the rows of one column layout to a flat result map, i.e. one without discriminator, constructor mappings,
+ * nested result maps or nested queries.
+ * <p>
+ * The columns are read by index and the properties are set by a {@link MethodHandle} per setter, instead of resolving
+ * both by name through a {@link org.apache.ibatis.reflection.MetaObject} for every row. Primitive properties read by a
+ * built-in {@link PrimitiveTypeHandler} are set without boxing their values. A mapper is built by the
+ * {@link DefaultResultSetHandler} the first time a result map meets a column layout and is shared by later executions.
+ *
+ * @since 3.5.3
+ * @see Configuration#isRowMapperCompilationEnabled()
+ */
+public class CompiledRowMapper {
+
+  private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+  private static final MethodHandle INVOKER_SETTER;
+
+  static {
+    try {
+      INVOKER_SETTER = MethodHandles.lookup().findStatic(CompiledRowMapper.class, "invoke",
+          MethodType.methodType(void.class, Invoker.class, Object.class, Object.class));
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private final Configuration configuration;
+  private final Class<?> type;
+  private final Column[] columns;
+
+  public CompiledRowMapper(Configuration configuration, Class<?> type, List<Column> columns) {
+    this.configuration = configuration;
+    this.type = type;
+    this.columns = columns.toArray(new Column[0]);
+  }
+
+  /**
+   * Maps the current row the same way as {@code DefaultResultSetHandler#getRowValue}.
+   *
+   * @param rs the result set, positioned on the row
+   * @return The result object, or null if every column is null and empty rows are not returned as instances
+   * @throws SQLException if a column cannot be read
+   */
+  public Object map(ResultSet rs) throws SQLException {
+    Object rowValue = configuration.getObjectFactory().create(type);
+    boolean callSettersOnNulls = configuration.isCallSettersOnNulls();
+    boolean foundValues = false;
+    for (Column column : columns) {
+      foundValues = column.map(rs, rowValue, callSettersOnNulls) || foundValues;
+    }
+    return foundValues || configuration.isReturnInstanceForEmptyRow() ? rowValue : null;
+  }
+
+  private static void invoke(Invoker invoker, Object target, Object value) throws Throwable {
+    try {
+      invoker.invoke(target, new Object[] { value });
+    } catch (InvocationTargetException e) {
+      throw ExceptionUtil.unwrapThrowable(e);
+    }
+  }
+
+  /**
+   * Builds the binding of a column to a property.
+   * A primitive property read by the built-in {@link PrimitiveTypeHandler} of the same primitive type is set without
+   * boxing. Subclasses of the built-in handlers are read with {@link TypeHandler#getResult(ResultSet, int)}, as they
+   * may override {@code getNullableResult}.
+   *
+   * @param reflector the reflector of the result type
+   * @param index the index of the column, starting at 1
+   * @param property the property
+   * @param typeHandler the type handler reading the column
+   * @return The column, or null if the property cannot be set directly, e.g. a nested property
+   */
+  public static Column column(Reflector reflector, int index, String property, TypeHandler<?> typeHandler) {
+    if (index < 1 || typeHandler == null || property.indexOf('.') >= 0 || property.indexOf('[') >= 0
+        || !reflector.hasSetter(property)) {
+      return null;
+    }
+    Class<?> propertyType = reflector.getSetterType(property);
+    MethodHandle setter = setter(reflector.getSetInvoker(property));
+    if (propertyType == int.class && typeHandler.getClass() == IntegerTypeHandler.class) {
+      return new IntColumn(index, property, typeHandler, setter);
+    } else if (propertyType == long.class && typeHandler.getClass() == LongTypeHandler.class) {
+      return new LongColumn(index, property, typeHandler, setter);
+    } else if (propertyType == double.class && typeHandler.getClass() == DoubleTypeHandler.class) {
+      return new DoubleColumn(index, property, typeHandler, setter);
+    } else if (propertyType == boolean.class && typeHandler.getClass() == BooleanTypeHandler.class) {
+      return new BooleanColumn(index, property, typeHandler, setter);
+    } else if (propertyType == float.class && typeHandler.getClass() == FloatTypeHandler.class) {
+      return new FloatColumn(index, property, typeHandler, setter);
+    } else if (propertyType == short.class && typeHandler.getClass() == ShortTypeHandler.class) {
+      return new ShortColumn(index, property, typeHandler, setter);
+    } else if (propertyType == byte.class && typeHandler.getClass() == ByteTypeHandler.class) {
+      return new ByteColumn(index, property, typeHandler, setter);
+    }
+    return new Column(index, property, typeHandler, propertyType.isPrimitive(), setter.asType(SETTER_TYPE));
+  }
+
+  private static MethodHandle setter(Invoker invoker) {
+    AccessibleObject member = null;
+    if (invoker instanceof MethodInvoker && !(invoker instanceof AmbiguousMethodInvoker)) {
+      member = ((MethodInvoker) invoker).getMethod();
+    } else if (invoker instanceof SetFieldInvoker) {
+      member = ((SetFieldInvoker) invoker).getField();
+    }
+    if (member != null) {
+      try {
+        return unreflect(member);
+      } catch (IllegalAccessException e) {
+        if (Reflector.canControlMemberAccessible()) {
+          try {
+            member.setAccessible(true);
+            return unreflect(member);
+          } catch (IllegalAccessException | RuntimeException e2) {
+            // fall back to the invoker
+          }
+        }
+      }
+    }
+    return INVOKER_SETTER.bindTo(invoker);
+  }
+
+  private static MethodHandle unreflect(AccessibleObject member) throws IllegalAccessException {
+    if (member instanceof Method) {
+      return MethodHandles.lookup().unreflect((Method) member);
+    }
+    return MethodHandles.lookup().unreflectSetter((Field) member);
+  }
+
+  /**
+   * A column bound to a property.
+   */
+  public static class Column {
+
+    final int index;
+    final String property;
+    final TypeHandler<?> typeHandler;
+    private final boolean primitive;
+    private final MethodHandle setter;
+
+    private Column(int index, String property, TypeHandler<?> typeHandler, boolean primitive, MethodHandle setter) {
+      this.index = index;
+      this.property = property;
+      this.typeHandler = typeHandler;
+      this.primitive = primitive;
+      this.setter = setter;
+    }
+
+    /**
+     * @return Whether the column was not null
+     */
+    boolean map(ResultSet rs, Object target, boolean callSettersOnNulls) throws SQLException {
+      Object value = typeHandler.getResult(rs, index);
+      if (value != null || (callSettersOnNulls && !primitive)) {
+        try {
+          setter.invokeExact(target, value);
+        } catch (Throwable t) {
+          throw setterException(target, value, t);
+        }
+      }
+      return value != null;
+    }
+
+    ResultMapException getterException(Exception e) {
+      // as BaseTypeHandler.getResult does
+      return new ResultMapException("Error attempting to get column #" + index + " from result set.  Cause: " + e, e);
+    }
+
+    ReflectionException setterException(Object target, Object value, Throwable t) {
+      return new ReflectionException("Could not set property '" + property + "' of '" + target.getClass() + "' with value '"
+          + value + "' Cause: " + t.toString(), t);
+    }
+
+  }
+
+  private static final class IntColumn extends Column {
+
+    private final MethodHandle setter;
+
+    IntColumn(int index, String property, TypeHandler<?> typeHandler, MethodHandle setter) {
+      super(index, property, typeHandler, true, null);
+      this.setter = setter.asType(MethodType.methodType(void.class, Object.class, int.class));
+    }
+
+    @Override
+    boolean map(ResultSet rs, Object target, boolean callSettersOnNulls) throws SQLException {
+      int value;
+      try {
+        value = ((PrimitiveTypeHandler.OfInt) typeHandler).getIntResult(rs, index);
+      } catch (Exception e) {
+        throw getterException(e);
+      }
+      if (value == 0 && rs.wasNull()) {
+        return false;
+      }
+      try {
+        setter.invokeExact(target, value);
+      } catch (Throwable t) {
+        throw setterException(target, value, t);
+      }
+      return true;
+    }
+
+  }
+
+  private static final class LongColumn extends Column {
+
+    private final MethodHandle setter;
+
+    LongColumn(int index, String property, TypeHandler<?> typeHandler, MethodHandle setter) {
+      super(index, property, typeHandler, true, null);
+      this.setter = setter.asType(MethodType.methodType(void.class, Object.class, long.class));
+    }
+
+    @Override
+    boolean map(ResultSet rs, Object target, boolean callSettersOnNulls) throws SQLException {
+      long value;
+      try {
+        value = ((PrimitiveTypeHandler.OfLong) typeHandler).getLongResult(rs, index);
+      } catch (Exception e) {
+        throw getterException(e);
+      }
+      if (value == 0 && rs.wasNull()) {
+        return false;
+      }
+      try {
+        setter.invokeExact(target, value);
+      } catch (Throwable t) {
+        throw setterException(target, value, t);
+      }
+      return true;
+    }
+
+  }
+
+  private static final class DoubleColumn extends Column {
+
+    private final MethodHandle setter;
+
+    DoubleColumn(int index, String property, TypeHandler<?> typeHandler, MethodHandle setter) {
+      super(index, property, typeHandler, true, null);
+      this.setter = setter.asType(MethodType.methodType(void.class, Object.class, double.class));
+    }
+
+    @Override
+    boolean map(ResultSet rs, Object target, boolean callSettersOnNulls) throws SQLException {
+      double value;
+      try {
+        value = ((PrimitiveTypeHandler.OfDouble) typeHandler).getDoubleResult(rs, index);
+      } catch (Exception e) {
+        throw getterException(e);
+      }
+      if (value == 0 && rs.wasNull()) {
+        return false;
+      }
+      try {
+        setter.invokeExact(target, value);
+      } catch (Throwable t) {
+        throw setterException(target, value, t);
+      }
+      return true;
+    }
+
+  }
+
+  private static final class BooleanColumn extends Column {
+
+    private final MethodHandle setter;
+
+    BooleanColumn(int index, String property, TypeHandler<?> typeHandler, MethodHandle setter) {
+      super(index, property, typeHandler, true, null);
+      this.setter = setter.asType(MethodType.methodType(void.class, Object.class, boolean.class));
+    }
+
+    @Override
+    boolean map(ResultSet rs, Object target, boolean callSettersOnNulls) throws SQLException {
+      boolean value;
+      try {
+        value = ((PrimitiveTypeHandler.OfBoolean) typeHandler).getBooleanResult(rs, index);
+      } catch (Exception e) {
+        throw getterException(e);
+      }
+      if (!value && rs.wasNull()) {
+        return false;
+      }
+      try {
+        setter.invokeExact(target, value);
+      } catch (Throwable t) {
+        throw setterException(target, value, t);
+      }
+      return true;
+    }
+
+  }
+
+  private static final class FloatColumn extends Column {
+
+    private final MethodHandle setter;
+
+    FloatColumn(int index, String property, TypeHandler<?> typeHandler, MethodHandle setter) {
+      super(index, property, typeHandler, true, null);
+      this.setter = setter.asType(MethodType.methodType(void.class, Object.class, float.class));
+    }
+
+    @Override
+    boolean map(ResultSet rs, Object target, boolean callSettersOnNulls) throws SQLException {
+      float value;
+      try {
+        value = ((PrimitiveTypeHandler.OfFloat) typeHandler).getFloatResult(rs, index);
+      } catch (Exception e) {
+        throw getterException(e);
+      }
+      if (value == 0 && rs.wasNull()) {
+        return false;
+      }
+      try {
+        setter.invokeExact(target, value);
+      } catch (Throwable t) {
+        throw setterException(target, value, t);
+      }
+      return true;
+    }
+
+  }
+
+  private static final class ShortColumn extends Column {
+
+    private final MethodHandle setter;
+
+    ShortColumn(int index, String property, TypeHandler<?> typeHandler, MethodHandle setter) {
+      super(index, property, typeHandler, true, null);
+      this.setter = setter.asType(MethodType.methodType(void.class, Object.class, short.class));
+    }
+
+    @Override
+    boolean map(ResultSet rs, Object target, boolean callSettersOnNulls) throws SQLException {
+      short value;
+      try {
+        value = ((PrimitiveTypeHandler.OfShort) typeHandler).getShortResult(rs, index);
+      } catch (Exception e) {
+        throw getterException(e);
+      }
+      if (value == 0 && rs.wasNull()) {
+        return false;
+      }
+      try {
+        setter.invokeExact(target, value);
+      } catch (Throwable t) {
+        throw setterException(target, value, t);
+      }
+      return true;
+    }
+
+  }
+
+  private static final class ByteColumn extends Column {
+
+    private final MethodHandle setter;
+
+    ByteColumn(int index, String property, TypeHandler<?> typeHandler, MethodHandle setter) {
+      super(index, property, typeHandler, true, null);
+      this.setter = setter.asType(MethodType.methodType(void.class, Object.class, byte.class));
+    }
+
+    @Override
+    boolean map(ResultSet rs, Object target, boolean callSettersOnNulls) throws SQLException {
+      byte value;
+      try {
+        value = ((PrimitiveTypeHandler.OfByte) typeHandler).getByteResult(rs, index);
+      } catch (Exception e) {
+        throw getterException(e);
+      }
+      if (value == 0 && rs.wasNull()) {
+        return false;
+      }
+      try {
+        setter.invokeExact(target, value);
+      } catch (Throwable t) {
+        throw setterException(target, value, t);
+      }
+      return true;
+    }
+
+  }
+
+}
@@ -21,6 +21,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -33,9 +34,11 @@ import org.apache.ibatis.binding.MapperMethod.ParamMap;
 import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.cursor.defaults.DefaultCursor;
+import org.apache.ibatis.cursor.defaults.PrefetchingCursor;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.loader.BatchResultLoader;
 import org.apache.ibatis.executor.loader.ResultLoader;
 import org.apache.ibatis.executor.loader.ResultLoaderMap;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
@@ -51,9 +54,12 @@ import org.apache.ibatis.mapping.ResultMap;
 import org.apache.ibatis.mapping.ResultMapping;
 import org.apache.ibatis.reflection.MetaClass;
 import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.Reflector;
 import org.apache.ibatis.reflection.ReflectorFactory;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.reflection.wrapper.DefaultObjectWrapperFactory;
 import org.apache.ibatis.session.AutoMappingBehavior;
+import org.apache.ibatis.session.AutoMappingUnknownColumnBehavior;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultContext;
 import org.apache.ibatis.session.ResultHandler;
@@ -92,6 +98,14 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   private final Map<String, ResultMapping> nextResultMaps = new HashMap<>();
   private final Map<CacheKey, List<PendingRelation>> pendingRelations = new HashMap<>();
 
+  // batched nested queries
+  private final Map<String, BatchResultLoader.Batch> lazyLoadBatches = new HashMap<>();
+  private final Map<String, BatchResultLoader.Batch> eagerLoadBatches = new HashMap<>();
+  private boolean handlingCursor;
+
+  // compiled row mappers of the current result set, by result map id
+  private final Map<String, CompiledRowMapper> compiledRowMappers = new HashMap<>();
+
   // Cached Automappings
   private final Map<String, List<UnMappedColumnAutoMapping>> autoMappingsCache = new HashMap<>();
 
@@ -103,7 +117,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     public ResultMapping propertyMapping;
   }
 
-  private static class UnMappedColumnAutoMapping {
+  static class UnMappedColumnAutoMapping {
     private final String column;
     private final String property;
     private final TypeHandler<?> typeHandler;
@@ -160,7 +174,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     try {
       final String resultMapId = parameterMapping.getResultMapId();
       final ResultMap resultMap = configuration.getResultMap(resultMapId);
-      final ResultSetWrapper rsw = new ResultSetWrapper(rs, configuration);
+      final ResultSetWrapper rsw = new ResultSetWrapper(rs, configuration, mappedStatement);
       if (this.resultHandler == null) {
         final DefaultResultHandler resultHandler = new DefaultResultHandler(objectFactory);
         handleRowValues(rsw, resultMap, resultHandler, new RowBounds(), null);
@@ -234,7 +248,14 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     }
 
     ResultMap resultMap = resultMaps.get(0);
-    return new DefaultCursor<>(this, resultMap, rsw, rowBounds);
+    // 游标的行在返回前不会等到外层查询结束, 嵌套查询不能延迟
+    handlingCursor = true;
+    Cursor<E> cursor = new DefaultCursor<>(this, resultMap, rsw, rowBounds);
+    Integer prefetchDepth = configuration.getCursorPrefetchDepth();
+    if (prefetchDepth != null && prefetchDepth > 0) {
+      cursor = new PrefetchingCursor<>(cursor, prefetchDepth, configuration.getAsyncExecutor());
+    }
+    return cursor;
   }
 
   // 获取结果集
@@ -252,7 +273,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         }
       }
     }
-    return rs != null ? new ResultSetWrapper(rs, configuration) : null;
+    return rs != null ? new ResultSetWrapper(rs, configuration, mappedStatement) : null;
   }
 
   private ResultSetWrapper getNextResultSet(Statement stmt) {
@@ -265,7 +286,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
           if (rs == null) {
             return getNextResultSet(stmt);
           } else {
-            return new ResultSetWrapper(rs, configuration);
+            return new ResultSetWrapper(rs, configuration, mappedStatement);
           }
         }
       }
@@ -287,6 +308,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 
   private void cleanUpAfterHandlingResultSet() {
     nestedResultObjects.clear();
+    compiledRowMappers.clear();
   }
 
   private void validateResultMapsCount(ResultSetWrapper rsw, int resultMapCount) {
@@ -402,6 +424,12 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   //
 
   private Object getRowValue(ResultSetWrapper rsw, ResultMap resultMap, String columnPrefix) throws SQLException {
+    if (columnPrefix == null && configuration.isRowMapperCompilationEnabled()) {
+      final CompiledRowMapper rowMapper = getCompiledRowMapper(rsw, resultMap);
+      if (rowMapper != null) {
+        return rowMapper.map(rsw.getResultSet());
+      }
+    }
     final ResultLoaderMap lazyLoader = new ResultLoaderMap();
     Object rowValue = createResultObject(rsw, resultMap, lazyLoader, columnPrefix);
     if (rowValue != null && !hasTypeHandlerForResultObject(rsw, resultMap.getType())) {
@@ -420,6 +448,92 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     return rowValue;
   }
 
+  //
+  // COMPILED ROW MAPPERS
+  //
+
+  private CompiledRowMapper getCompiledRowMapper(ResultSetWrapper rsw, ResultMap resultMap) throws SQLException {
+    final String resultMapId = resultMap.getId();
+    if (compiledRowMappers.containsKey(resultMapId)) {
+      return compiledRowMappers.get(resultMapId);
+    }
+    CompiledRowMapper rowMapper = null;
+    if (isCompilable(rsw, resultMap)) {
+      // 同一个 resultMap 遇到相同的列布局时复用
+      final String layout = rsw.getColumnNames().toString() + rsw.getClassNames() + rsw.getJdbcTypes();
+      rowMapper = configuration.getCompiledRowMapper(resultMapId, layout);
+      if (rowMapper == null) {
+        rowMapper = compileRowMapper(rsw, resultMap);
+        if (rowMapper != null) {
+          configuration.addCompiledRowMapper(resultMapId, layout, rowMapper);
+        }
+      }
+    }
+    compiledRowMappers.put(resultMapId, rowMapper);
+    return rowMapper;
+  }
+
+  private boolean isCompilable(ResultSetWrapper rsw, ResultMap resultMap) {
+    final Class<?> resultType = resultMap.getType();
+    // 未知列需要在每次执行时报告, 与结果集形状共享自动映射的条件一致
+    if (configuration.getAutoMappingUnknownColumnBehavior() != AutoMappingUnknownColumnBehavior.NONE
+        || !configuration.isUseColumnLabel() || resultMap.getDiscriminator() != null || resultMap.hasNestedResultMaps()
+        || resultMap.hasNestedQueries() || !resultMap.getConstructorResultMappings().isEmpty()
+        || !(configuration.getObjectWrapperFactory() instanceof DefaultObjectWrapperFactory)
+        || Map.class.isAssignableFrom(resultType) || Collection.class.isAssignableFrom(resultType)
+        || hasTypeHandlerForResultObject(rsw, resultType) || !reflectorFactory.findForClass(resultType).hasDefaultConstructor()) {
+      return false;
+    }
+    for (ResultMapping propertyMapping : resultMap.getPropertyResultMappings()) {
+      if (propertyMapping.isCompositeResult() || propertyMapping.getResultSet() != null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private CompiledRowMapper compileRowMapper(ResultSetWrapper rsw, ResultMap resultMap) throws SQLException {
+    final Class<?> resultType = resultMap.getType();
+    final Reflector reflector = reflectorFactory.findForClass(resultType);
+    final List<CompiledRowMapper.Column> columns = new ArrayList<>();
+    if (shouldApplyAutomaticMappings(resultMap, false)) {
+      final MetaObject metaObject = configuration.newMetaObject(objectFactory.create(resultType));
+      for (UnMappedColumnAutoMapping mapping : createAutomaticMappings(rsw, resultMap, metaObject, null)) {
+        final CompiledRowMapper.Column column = CompiledRowMapper.column(reflector, indexOfColumn(rsw, mapping.column),
+            mapping.property, mapping.typeHandler);
+        if (column == null) {
+          return null;
+        }
+        columns.add(column);
+      }
+    }
+    final List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, null);
+    for (ResultMapping propertyMapping : resultMap.getPropertyResultMappings()) {
+      final String columnName = propertyMapping.getColumn();
+      if (propertyMapping.getProperty() == null || columnName == null
+          || !mappedColumnNames.contains(columnName.toUpperCase(Locale.ENGLISH))) {
+        continue;
+      }
+      final CompiledRowMapper.Column column = CompiledRowMapper.column(reflector, indexOfColumn(rsw, columnName),
+          propertyMapping.getProperty(), propertyMapping.getTypeHandler());
+      if (column == null) {
+        return null;
+      }
+      columns.add(column);
+    }
+    return new CompiledRowMapper(configuration, resultType, columns);
+  }
+
+  private int indexOfColumn(ResultSetWrapper rsw, String columnName) {
+    final List<String> columnNames = rsw.getColumnNames();
+    for (int i = 0; i < columnNames.size(); i++) {
+      if (columnNames.get(i).equalsIgnoreCase(columnName)) {
+        return i + 1;
+      }
+    }
+    return -1;
+  }
+
   private boolean shouldApplyAutomaticMappings(ResultMap resultMap, boolean isNested) {
     // 判断是否自动映射：<resultMap autoMapping="true" id="" type=""></resultMap>
     if (resultMap.getAutoMapping() != null) {
@@ -491,6 +605,10 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 
   private List<UnMappedColumnAutoMapping> createAutomaticMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String columnPrefix) throws SQLException {
     final String mapKey = resultMap.getId() + ":" + columnPrefix;
+    // 未知列的处理方式为 NONE 时, 自动映射随结果集的形状在语句的各次执行间共享
+    final Map<String, List<UnMappedColumnAutoMapping>> autoMappingsCache =
+        configuration.getAutoMappingUnknownColumnBehavior() == AutoMappingUnknownColumnBehavior.NONE
+            ? rsw.getShape().autoMappings : this.autoMappingsCache;
     List<UnMappedColumnAutoMapping> autoMapping = autoMappingsCache.get(mapKey);
     if (autoMapping == null) {
       autoMapping = new ArrayList<>();
@@ -775,10 +893,24 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         executor.deferLoad(nestedQuery, metaResultObject, property, key, targetType);
         value = DEFERRED;
       } else {
-        final ResultLoader resultLoader = new ResultLoader(configuration, executor, nestedQuery, nestedQueryParameterObject, targetType, key, nestedBoundSql);
+        final ResultLoader resultLoader;
+        if (propertyMapping.isLazy() && configuration.getLazyLoadBatchSize() != null) {
+          final BatchResultLoader.Batch batch = lazyLoadBatches.computeIfAbsent(nestedQueryId,
+              id -> new BatchResultLoader.Batch(configuration.getLazyLoadBatchSize()));
+          resultLoader = new BatchResultLoader(batch, configuration, executor, nestedQuery, nestedQueryParameterObject, targetType, key, nestedBoundSql);
+        } else if (!propertyMapping.isLazy() && isEagerLoadBatched()) {
+          final BatchResultLoader.Batch batch = eagerLoadBatches.computeIfAbsent(nestedQueryId,
+              id -> new BatchResultLoader.Batch(configuration.getEagerLoadBatchSize()));
+          resultLoader = new BatchResultLoader(batch, configuration, executor, nestedQuery, nestedQueryParameterObject, targetType, key, nestedBoundSql);
+        } else {
+          resultLoader = new ResultLoader(configuration, executor, nestedQuery, nestedQueryParameterObject, targetType, key, nestedBoundSql);
+        }
         if (propertyMapping.isLazy()) {
           lazyLoader.addLoader(property, metaResultObject, resultLoader);
           value = DEFERRED;
+        } else if (resultLoader instanceof BatchResultLoader) {
+          executor.deferLoad(metaResultObject, property, resultLoader);
+          value = DEFERRED;
         } else {
           value = resultLoader.loadResult();
         }
@@ -787,6 +919,14 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     return value;
   }
 
+  /**
+   * Rows handed to a result handler or a cursor are used before the outermost query completes, so their nested
+   * queries cannot wait for it.
+   */
+  private boolean isEagerLoadBatched() {
+    return configuration.getEagerLoadBatchSize() != null && resultHandler == null && !handlingCursor;
+  }
+
   private Object prepareParameterForNestedQuery(ResultSet rs, ResultMapping resultMapping, Class<?> parameterType, String columnPrefix) throws SQLException {
     if (resultMapping.isCompositeResult()) {
       return prepareCompositeKeyParameter(rs, resultMapping, parameterType, columnPrefix);
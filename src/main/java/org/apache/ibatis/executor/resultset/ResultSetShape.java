@@ -0,0 +1,72 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.TypeHandler;
+
+/**
+ * The column layout of a result set, together with what the {@link ResultSetWrapper} and the
+ * {@link DefaultResultSetHandler} derive from it: the resolved type handlers, the mapped and unmapped columns of each
+ * result map and the auto-mappings.
+ * <p>
+ * When {@link org.apache.ibatis.session.Configuration#isResultSetShapeCacheEnabled()} is set, the shapes are kept per
+ * mapped statement and column labels and types, so the executions of a statement share them instead of deriving
+ * them again. A shape is therefore safe to use from several threads.
+ *
+ * @since 3.5.3
+ */
+public class ResultSetShape {
+
+  private final List<String> columnNames;
+  private final List<String> classNames;
+  private final List<JdbcType> jdbcTypes;
+  final Map<String, Map<Class<?>, TypeHandler<?>>> typeHandlerMap = new ConcurrentHashMap<>();
+  final Map<String, List<String>> mappedColumnNamesMap = new ConcurrentHashMap<>();
+  final Map<String, List<String>> unMappedColumnNamesMap = new ConcurrentHashMap<>();
+  final Map<String, List<DefaultResultSetHandler.UnMappedColumnAutoMapping>> autoMappings = new ConcurrentHashMap<>();
+
+  ResultSetShape(List<String> columnNames, List<JdbcType> jdbcTypes, ResultSetMetaData metaData) throws SQLException {
+    List<String> classNames = new ArrayList<>(columnNames.size());
+    for (int i = 1; i <= columnNames.size(); i++) {
+      classNames.add(metaData.getColumnClassName(i));
+    }
+    this.columnNames = Collections.unmodifiableList(columnNames);
+    this.classNames = Collections.unmodifiableList(classNames);
+    this.jdbcTypes = Collections.unmodifiableList(jdbcTypes);
+  }
+
+  public List<String> getColumnNames() {
+    return columnNames;
+  }
+
+  public List<String> getClassNames() {
+    return classNames;
+  }
+
+  public List<JdbcType> getJdbcTypes() {
+    return jdbcTypes;
+  }
+
+}
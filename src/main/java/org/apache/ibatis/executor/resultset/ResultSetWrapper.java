@@ -19,14 +19,14 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ResultMap;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.type.JdbcType;
@@ -42,36 +42,78 @@ public class ResultSetWrapper {
 
   private final ResultSet resultSet;
   private final TypeHandlerRegistry typeHandlerRegistry;
-  private final List<String> columnNames = new ArrayList<>();
-  private final List<String> classNames = new ArrayList<>();
-  private final List<JdbcType> jdbcTypes = new ArrayList<>();
-  private final Map<String, Map<Class<?>, TypeHandler<?>>> typeHandlerMap = new HashMap<>();
-  private final Map<String, List<String>> mappedColumnNamesMap = new HashMap<>();
-  private final Map<String, List<String>> unMappedColumnNamesMap = new HashMap<>();
+  private final ResultSetShape shape;
+  private final List<String> columnNames;
+  private final List<String> classNames;
+  private final List<JdbcType> jdbcTypes;
+  private final Map<String, Map<Class<?>, TypeHandler<?>>> typeHandlerMap;
+  private final Map<String, List<String>> mappedColumnNamesMap;
+  private final Map<String, List<String>> unMappedColumnNamesMap;
 
   public ResultSetWrapper(ResultSet rs, Configuration configuration) throws SQLException {
+    this(rs, configuration, null);
+  }
+
+  /**
+   * @param rs the result set
+   * @param configuration the configuration
+   * @param mappedStatement the statement the result set belongs to, used to share its shape with the other executions
+   *          of the statement, or null to derive the shape for this result set only
+   * @throws SQLException if the metadata of the result set cannot be read
+   * @since 3.5.3
+   */
+  public ResultSetWrapper(ResultSet rs, Configuration configuration, MappedStatement mappedStatement) throws SQLException {
     super();
     this.typeHandlerRegistry = configuration.getTypeHandlerRegistry();
     this.resultSet = rs;
     final ResultSetMetaData metaData = rs.getMetaData();
     final int columnCount = metaData.getColumnCount();
+    final List<String> columnNames = new ArrayList<>(columnCount);
+    final List<JdbcType> jdbcTypes = new ArrayList<>(columnCount);
     for (int i = 1; i <= columnCount; i++) {
       columnNames.add(configuration.isUseColumnLabel() ? metaData.getColumnLabel(i) : metaData.getColumnName(i));
       jdbcTypes.add(JdbcType.forCode(metaData.getColumnType(i)));
-      classNames.add(metaData.getColumnClassName(i));
     }
+    if (mappedStatement != null && configuration.isResultSetShapeCacheEnabled()) {
+      // 同一个语句的列名和列类型相同时复用已解析的结果
+      final StringBuilder layout = new StringBuilder();
+      for (int i = 0; i < columnCount; i++) {
+        layout.append(i == 0 ? "" : ",").append(columnNames.get(i)).append(' ').append(jdbcTypes.get(i));
+      }
+      ResultSetShape cached = configuration.getResultSetShape(mappedStatement.getId(), layout.toString());
+      if (cached == null) {
+        cached = new ResultSetShape(columnNames, jdbcTypes, metaData);
+        configuration.addResultSetShape(mappedStatement.getId(), layout.toString(), cached);
+      }
+      this.shape = cached;
+    } else {
+      this.shape = new ResultSetShape(columnNames, jdbcTypes, metaData);
+    }
+    this.columnNames = shape.getColumnNames();
+    this.classNames = shape.getClassNames();
+    this.jdbcTypes = shape.getJdbcTypes();
+    this.typeHandlerMap = shape.typeHandlerMap;
+    this.mappedColumnNamesMap = shape.mappedColumnNamesMap;
+    this.unMappedColumnNamesMap = shape.unMappedColumnNamesMap;
   }
 
   public ResultSet getResultSet() {
     return resultSet;
   }
 
+  /**
+   * @since 3.5.3
+   */
+  public ResultSetShape getShape() {
+    return shape;
+  }
+
   public List<String> getColumnNames() {
     return this.columnNames;
   }
 
   public List<String> getClassNames() {
-    return Collections.unmodifiableList(classNames);
+    return classNames;
   }
 
   public List<JdbcType> getJdbcTypes() {
@@ -97,14 +139,8 @@ public class ResultSetWrapper {
    * @return
    */
   public TypeHandler<?> getTypeHandler(Class<?> propertyType, String columnName) {
-    TypeHandler<?> handler = null;
-    Map<Class<?>, TypeHandler<?>> columnHandlers = typeHandlerMap.get(columnName);
-    if (columnHandlers == null) {
-      columnHandlers = new HashMap<>();
-      typeHandlerMap.put(columnName, columnHandlers);
-    } else {
-      handler = columnHandlers.get(propertyType);
-    }
+    Map<Class<?>, TypeHandler<?>> columnHandlers = typeHandlerMap.computeIfAbsent(columnName, k -> new ConcurrentHashMap<>());
+    TypeHandler<?> handler = columnHandlers.get(propertyType);
     if (handler == null) {
       JdbcType jdbcType = getJdbcType(columnName);
       handler = typeHandlerRegistry.getTypeHandler(propertyType, jdbcType);
@@ -17,6 +17,7 @@ package org.apache.ibatis.mapping;
 
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -24,12 +25,17 @@ import java.util.Properties;
 import org.apache.ibatis.builder.InitializingObject;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheSerializer;
+import org.apache.ibatis.cache.Weigher;
 import org.apache.ibatis.cache.decorators.BlockingCache;
 import org.apache.ibatis.cache.decorators.LoggingCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.ScheduledCache;
 import org.apache.ibatis.cache.decorators.SerializedCache;
 import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.decorators.WeightedCache;
+import org.apache.ibatis.cache.impl.ConcurrentCache;
+import org.apache.ibatis.cache.impl.EstimatingWeigher;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.SystemMetaObject;
@@ -42,8 +48,11 @@ public class CacheBuilder {
   private Class<? extends Cache> implementation;
   private final List<Class<? extends Cache>> decorators;
   private Integer size;
+  private Long maxBytes;
+  private Class<? extends Weigher> weigher;
   private Long clearInterval;
   private boolean readWrite;
+  private CacheSerializer serializer;
   private Properties properties;
   private boolean blocking;
 
@@ -69,6 +78,26 @@ public class CacheBuilder {
     return this;
   }
 
+  /**
+   * @param maxBytes the maximum estimated memory of the entries in bytes, or null for no limit
+   * @return this builder
+   * @since 3.5.3
+   */
+  public CacheBuilder maxBytes(Long maxBytes) {
+    this.maxBytes = maxBytes;
+    return this;
+  }
+
+  /**
+   * @param weigher the weigher estimating the memory of the entries, or null for an {@link EstimatingWeigher}
+   * @return this builder
+   * @since 3.5.3
+   */
+  public CacheBuilder weigher(Class<? extends Weigher> weigher) {
+    this.weigher = weigher;
+    return this;
+  }
+
   public CacheBuilder clearInterval(Long clearInterval) {
     this.clearInterval = clearInterval;
     return this;
@@ -79,6 +108,17 @@ public class CacheBuilder {
     return this;
   }
 
+  /**
+   * @param serializer the serializer of the read-write cache and of the caches having a {@code serializer} property,
+   *        or null for Java serialization
+   * @return this builder
+   * @since 3.5.3
+   */
+  public CacheBuilder serializer(CacheSerializer serializer) {
+    this.serializer = serializer;
+    return this;
+  }
+
   public CacheBuilder blocking(boolean blocking) {
     this.blocking = blocking;
     return this;
@@ -94,7 +134,8 @@ public class CacheBuilder {
     Cache cache = newBaseCacheInstance(implementation, id);
     setCacheProperties(cache);
     // issue #352, do not apply decorators to custom caches
-    if (PerpetualCache.class.equals(cache.getClass())) {
+    if (PerpetualCache.class.equals(cache.getClass()) || ConcurrentCache.class.equals(cache.getClass())) {
+      cache = setMaxBytes(cache);
       for (Class<? extends Cache> decorator : decorators) {
         cache = newCacheDecoratorInstance(decorator, cache);
         setCacheProperties(cache);
@@ -113,12 +154,18 @@ public class CacheBuilder {
         decorators.add(LruCache.class);
       }
     }
+    // the default LRU cache is replaced by one that does not lock on reads
+    if (PerpetualCache.class.equals(implementation) && Collections.singletonList(LruCache.class).equals(decorators)) {
+      implementation = ConcurrentCache.class;
+      decorators.clear();
+    }
   }
 
   /**
    * 装饰者设计模式
    *
    * Cache对象之间的引用顺序为：SynchronizedCache -> LoggingCache –> SerializedCache –> ScheduledCache –> LruCache –> PerpetualCache
+   * The default {@link ConcurrentCache} is thread safe by itself and is not wrapped in a SynchronizedCache.
    * @param cache
    * @return
    */
@@ -133,10 +180,12 @@ public class CacheBuilder {
         ((ScheduledCache) cache).setClearInterval(clearInterval);
       }
       if (readWrite) {
-        cache = new SerializedCache(cache);
+        cache = serializer == null ? new SerializedCache(cache) : new SerializedCache(cache, serializer);
       }
       cache = new LoggingCache(cache);
-      cache = new SynchronizedCache(cache);
+      if (!ConcurrentCache.class.equals(implementation)) {
+        cache = new SynchronizedCache(cache);
+      }
       if (blocking) {
         cache = new BlockingCache(cache);
       }
@@ -146,9 +195,33 @@ public class CacheBuilder {
     }
   }
 
+  /**
+   * Bounds the memory of the base cache.
+   * The weighing decorator goes right on top of it, so that it also sees the entries evicted by other decorators.
+   */
+  private Cache setMaxBytes(Cache cache) {
+    if (maxBytes == null) {
+      return cache;
+    }
+    Weigher cacheWeigher = newWeigherInstance(weigher == null ? EstimatingWeigher.class : weigher);
+    if (cache instanceof ConcurrentCache) {
+      ((ConcurrentCache) cache).setWeigher(cacheWeigher);
+      ((ConcurrentCache) cache).setMaxBytes(maxBytes);
+      return cache;
+    }
+    WeightedCache weightedCache = new WeightedCache(cache);
+    weightedCache.setWeigher(cacheWeigher);
+    weightedCache.setMaxBytes(maxBytes);
+    return weightedCache;
+  }
+
   private void setCacheProperties(Cache cache) {
+    MetaObject metaCache = SystemMetaObject.forObject(cache);
+    if (serializer != null && metaCache.hasSetter("serializer")
+        && CacheSerializer.class.equals(metaCache.getSetterType("serializer"))) {
+      metaCache.setValue("serializer", serializer);
+    }
     if (properties != null) {
-      MetaObject metaCache = SystemMetaObject.forObject(cache);
       for (Map.Entry<Object, Object> entry : properties.entrySet()) {
         String name = (String) entry.getKey();
         String value = (String) entry.getValue();
@@ -211,6 +284,14 @@ public class CacheBuilder {
     }
   }
 
+  private Weigher newWeigherInstance(Class<? extends Weigher> weigherClass) {
+    try {
+      return weigherClass.getConstructor().newInstance();
+    } catch (Exception e) {
+      throw new CacheException("Could not instantiate cache weigher (" + weigherClass + "). Cause: " + e, e);
+    }
+  }
+
   private Cache newCacheDecoratorInstance(Class<? extends Cache> cacheClass, Cache base) {
     Constructor<? extends Cache> cacheConstructor = getCacheDecoratorConstructor(cacheClass);
     try {
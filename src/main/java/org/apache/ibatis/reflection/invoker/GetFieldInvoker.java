@@ -15,6 +15,7 @@
  */
 package org.apache.ibatis.reflection.invoker;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Field;
 
 import org.apache.ibatis.reflection.Reflector;
@@ -24,18 +25,24 @@ import org.apache.ibatis.reflection.Reflector;
  */
 public class GetFieldInvoker implements Invoker {
   private final Field field;
+  private MethodHandle handle;
 
   public GetFieldInvoker(Field field) {
     this.field = field;
+    this.handle = InvokerHandles.forGetter(field);
   }
 
   @Override
   public Object invoke(Object target, Object[] args) throws IllegalAccessException {
+    if (handle != null) {
+      return InvokerHandles.access(handle, target, args);
+    }
     try {
       return field.get(target);
     } catch (IllegalAccessException e) {
       if (Reflector.canControlMemberAccessible()) {
         field.setAccessible(true);
+        handle = InvokerHandles.forGetter(field);
         return field.get(target);
       } else {
         throw e;
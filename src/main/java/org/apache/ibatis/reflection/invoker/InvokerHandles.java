@@ -0,0 +1,159 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * Builds the {@link MethodHandle}s the invokers call instead of {@link Method#invoke(Object, Object...)},
+ * {@link Field#get(Object)} and {@link Field#set(Object, Object)}.
+ * <p>
+ * Every handle is adapted to the type {@code (Object, Object[])Object}, so it can be called with
+ * {@link MethodHandle#invokeExact(Object...)}, and converts its arguments the same way as reflection does.
+ * A handle is only built for a member the lookup may access; otherwise the invoker keeps using reflection.
+ *
+ * @since 3.5.3
+ */
+final class InvokerHandles {
+
+  private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+  private static final MethodHandle WRAP_TARGET_EXCEPTION;
+
+  static {
+    try {
+      WRAP_TARGET_EXCEPTION = MethodHandles.lookup().findStatic(InvokerHandles.class, "wrapTargetException",
+          MethodType.methodType(Object.class, Throwable.class));
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private InvokerHandles() {
+    // Prevent Instantiation
+  }
+
+  /**
+   * @param method the method
+   * @return A handle calling the method, or null if it is not accessible
+   */
+  static MethodHandle forMethod(Method method) {
+    MethodHandle handle;
+    try {
+      handle = MethodHandles.lookup().unreflect(method);
+    } catch (IllegalAccessException e) {
+      return null;
+    }
+    // like Method.invoke, report the exceptions of the method as InvocationTargetExceptions
+    MethodType type = handle.type();
+    MethodHandle wrapper = MethodHandles.dropArguments(
+        WRAP_TARGET_EXCEPTION.asType(MethodType.methodType(type.returnType(), Throwable.class)), 1,
+        type.parameterList());
+    handle = MethodHandles.catchException(handle, Throwable.class, wrapper);
+    return adapt(handle, Modifier.isStatic(method.getModifiers()), method.getParameterCount());
+  }
+
+  /**
+   * @param field the field
+   * @return A handle reading the field, or null if it is not accessible
+   */
+  static MethodHandle forGetter(Field field) {
+    try {
+      return adapt(MethodHandles.lookup().unreflectGetter(field), Modifier.isStatic(field.getModifiers()), 0);
+    } catch (IllegalAccessException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @param field the field
+   * @return A handle writing the field, or null if it is not accessible or final
+   */
+  static MethodHandle forSetter(Field field) {
+    try {
+      return adapt(MethodHandles.lookup().unreflectSetter(field), Modifier.isStatic(field.getModifiers()), 1);
+    } catch (IllegalAccessException e) {
+      return null;
+    }
+  }
+
+  private static MethodHandle adapt(MethodHandle handle, boolean isStatic, int parameterCount) {
+    if (isStatic) {
+      // the target is ignored, as by reflection
+      handle = MethodHandles.dropArguments(handle, 0, Object.class);
+    }
+    return handle.asType(handle.type().generic())
+        .asSpreader(Object[].class, parameterCount)
+        .asType(INVOKER_TYPE);
+  }
+
+  /**
+   * Calls a handle built by {@link #forMethod(Method)}.
+   *
+   * @param handle the handle
+   * @param target the target object
+   * @param args the arguments
+   * @return The result, or null for a void method
+   * @throws InvocationTargetException if the method throws an exception
+   */
+  static Object invoke(MethodHandle handle, Object target, Object[] args) throws InvocationTargetException {
+    try {
+      return call(handle, target, args);
+    } catch (InvocationTargetException | RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new InvocationTargetException(t);
+    }
+  }
+
+  /**
+   * Calls a handle built by {@link #forGetter(Field)} or {@link #forSetter(Field)}.
+   *
+   * @param handle the handle
+   * @param target the target object
+   * @param args the arguments
+   * @return The value of the field, or null for a setter
+   */
+  static Object access(MethodHandle handle, Object target, Object[] args) {
+    try {
+      return call(handle, target, args);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new UndeclaredThrowableException(t);
+    }
+  }
+
+  private static Object call(MethodHandle handle, Object target, Object[] args) throws Throwable {
+    try {
+      return (Object) handle.invokeExact(target, args);
+    } catch (ClassCastException | NullPointerException e) {
+      // a wrong or null target or argument, the member itself was not reached
+      throw new IllegalArgumentException(e.toString(), e);
+    }
+  }
+
+  private static Object wrapTargetException(Throwable t) throws InvocationTargetException {
+    throw new InvocationTargetException(t);
+  }
+
+}
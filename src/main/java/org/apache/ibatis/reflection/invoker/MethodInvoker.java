@@ -15,6 +15,7 @@
  */
 package org.apache.ibatis.reflection.invoker;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
@@ -27,9 +28,11 @@ public class MethodInvoker implements Invoker {
 
   private final Class<?> type;
   private final Method method;
+  private MethodHandle handle;
 
   public MethodInvoker(Method method) {
     this.method = method;
+    this.handle = InvokerHandles.forMethod(method);
 
     if (method.getParameterTypes().length == 1) {
       type = method.getParameterTypes()[0];
@@ -40,11 +43,15 @@ public class MethodInvoker implements Invoker {
 
   @Override
   public Object invoke(Object target, Object[] args) throws IllegalAccessException, InvocationTargetException {
+    if (handle != null) {
+      return InvokerHandles.invoke(handle, target, args);
+    }
     try {
       return method.invoke(target, args);
     } catch (IllegalAccessException e) {
       if (Reflector.canControlMemberAccessible()) {
         method.setAccessible(true);
+        handle = InvokerHandles.forMethod(method);
         return method.invoke(target, args);
       } else {
         throw e;
@@ -56,4 +63,11 @@ public class MethodInvoker implements Invoker {
   public Class<?> getType() {
     return type;
   }
+
+  /**
+   * @since 3.5.3
+   */
+  public Method getMethod() {
+    return method;
+  }
 }
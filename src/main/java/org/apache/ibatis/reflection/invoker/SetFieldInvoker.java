@@ -15,6 +15,7 @@
  */
 package org.apache.ibatis.reflection.invoker;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Field;
 
 import org.apache.ibatis.reflection.Reflector;
@@ -24,18 +25,24 @@ import org.apache.ibatis.reflection.Reflector;
  */
 public class SetFieldInvoker implements Invoker {
   private final Field field;
+  private MethodHandle handle;
 
   public SetFieldInvoker(Field field) {
     this.field = field;
+    this.handle = InvokerHandles.forSetter(field);
   }
 
   @Override
   public Object invoke(Object target, Object[] args) throws IllegalAccessException {
+    if (handle != null) {
+      return InvokerHandles.access(handle, target, args);
+    }
     try {
       field.set(target, args[0]);
     } catch (IllegalAccessException e) {
       if (Reflector.canControlMemberAccessible()) {
         field.setAccessible(true);
+        handle = InvokerHandles.forSetter(field);
         field.set(target, args[0]);
       } else {
         throw e;
@@ -48,4 +55,11 @@ public class SetFieldInvoker implements Invoker {
   public Class<?> getType() {
     return field.getType();
   }
+
+  /**
+   * @since 3.5.3
+   */
+  public Field getField() {
+    return field;
+  }
 }
@@ -38,6 +38,8 @@ import org.apache.ibatis.type.TypeHandlerRegistry;
  */
 public class DefaultParameterHandler implements ParameterHandler {
 
+  private static final String BATCH_PARAMETER_PREFIX = "__batch_";
+
   private final TypeHandlerRegistry typeHandlerRegistry;
 
   private final MappedStatement mappedStatement;
@@ -67,21 +69,7 @@ public class DefaultParameterHandler implements ParameterHandler {
       for (int i = 0; i < parameterMappings.size(); i++) {
         ParameterMapping parameterMapping = parameterMappings.get(i);
         if (parameterMapping.getMode() != ParameterMode.OUT) {
-          Object value;
-          // propertyName取的是#{ }里的属性名：select * from test WHERE id =#{id}，也就是#{id}里的id
-          String propertyName = parameterMapping.getProperty();
-          if (boundSql.hasAdditionalParameter(propertyName)) { // issue #448 ask first for additional params
-            value = boundSql.getAdditionalParameter(propertyName);
-          } else if (parameterObject == null) {
-            value = null;
-          } else if (typeHandlerRegistry.hasTypeHandler(parameterObject.getClass())) {
-            value = parameterObject;
-          } else {
-            // Mapper.java中的parameterObject：参数对象
-            MetaObject metaObject = configuration.newMetaObject(parameterObject);
-            // 这里底层是通过反射去Mapper.java类拿值
-            value = metaObject.getValue(propertyName);
-          }
+          Object value = getParameterValue(configuration, boundSql, parameterObject, parameterMapping);
 
           TypeHandler typeHandler = parameterMapping.getTypeHandler();
           // 获取参数的JDBC类型 String -> varchar
@@ -106,4 +94,47 @@ public class DefaultParameterHandler implements ParameterHandler {
     }
   }
 
+  /**
+   * Resolves the value of a parameter: the additional parameter of the same name, the parameter object itself if it
+   * has a type handler, or else its property.
+   *
+   * @since 3.5.3
+   */
+  public static Object getParameterValue(Configuration configuration, BoundSql boundSql, Object parameterObject,
+      ParameterMapping parameterMapping) {
+    // propertyName取的是#{ }里的属性名：select * from test WHERE id =#{id}，也就是#{id}里的id
+    String propertyName = parameterMapping.getProperty();
+    if (boundSql.hasAdditionalParameter(propertyName)) { // issue #448 ask first for additional params
+      return boundSql.getAdditionalParameter(propertyName);
+    } else if (parameterObject == null) {
+      return null;
+    } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+      return parameterObject;
+    } else {
+      // Mapper.java中的parameterObject：参数对象
+      MetaObject metaObject = configuration.newMetaObject(parameterObject);
+      // 这里底层是通过反射去Mapper.java类拿值
+      return metaObject.getValue(propertyName);
+    }
+  }
+
+  /**
+   * Copies a parameter mapping to the parameter at the given index of a statement merging several ones, e.g. a
+   * multi-row insert. The value of the copy is bound as the additional parameter named after its property.
+   *
+   * @since 3.5.3
+   */
+  public static ParameterMapping batchParameterMapping(Configuration configuration, ParameterMapping parameterMapping,
+      int index) {
+    return new ParameterMapping.Builder(configuration, BATCH_PARAMETER_PREFIX + index, parameterMapping.getTypeHandler())
+        .mode(parameterMapping.getMode())
+        .javaType(parameterMapping.getJavaType())
+        .jdbcType(parameterMapping.getJdbcType())
+        .numericScale(parameterMapping.getNumericScale())
+        .resultMapId(parameterMapping.getResultMapId())
+        .jdbcTypeName(parameterMapping.getJdbcTypeName())
+        .expression(parameterMapping.getExpression())
+        .build();
+  }
+
 }
@@ -17,6 +17,7 @@ package org.apache.ibatis.session;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -25,6 +26,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
 
 import org.apache.ibatis.binding.MapperRegistry;
@@ -34,10 +41,16 @@ import org.apache.ibatis.builder.ResultMapResolver;
 import org.apache.ibatis.builder.annotation.MethodResolver;
 import org.apache.ibatis.builder.xml.XMLStatementBuilder;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheSerializer;
 import org.apache.ibatis.cache.decorators.FifoCache;
 import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.OverflowCache;
 import org.apache.ibatis.cache.decorators.SoftCache;
 import org.apache.ibatis.cache.decorators.WeakCache;
+import org.apache.ibatis.cache.impl.BinaryCacheSerializer;
+import org.apache.ibatis.cache.impl.ConcurrentCache;
+import org.apache.ibatis.cache.impl.JavaCacheSerializer;
+import org.apache.ibatis.cache.impl.OffHeapCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.datasource.jndi.JndiDataSourceFactory;
 import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
@@ -52,7 +65,9 @@ import org.apache.ibatis.executor.loader.ProxyFactory;
 import org.apache.ibatis.executor.loader.cglib.CglibProxyFactory;
 import org.apache.ibatis.executor.loader.javassist.JavassistProxyFactory;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
+import org.apache.ibatis.executor.resultset.CompiledRowMapper;
 import org.apache.ibatis.executor.resultset.DefaultResultSetHandler;
+import org.apache.ibatis.executor.resultset.ResultSetShape;
 import org.apache.ibatis.executor.resultset.ResultSetHandler;
 import org.apache.ibatis.executor.statement.RoutingStatementHandler;
 import org.apache.ibatis.executor.statement.StatementHandler;
@@ -113,6 +128,7 @@ public class Configuration {
   protected boolean callSettersOnNulls;
   protected boolean useActualParamName = true;
   protected boolean returnInstanceForEmptyRow;
+  protected boolean batchGroupingEnabled;
 
   protected String logPrefix;
   protected Class<? extends Log> logImpl;
@@ -122,6 +138,19 @@ public class Configuration {
   protected Set<String> lazyLoadTriggerMethods = new HashSet<>(Arrays.asList("equals", "clone", "hashCode", "toString"));
   protected Integer defaultStatementTimeout;
   protected Integer defaultFetchSize;
+  protected Integer batchFlushRowsPerStatement;
+  protected Integer batchFlushPendingRows;
+  protected Long batchFlushPendingBytes;
+  protected Integer batchInsertRewriteRows;
+  protected Integer batchFlushThreads;
+  protected ExecutorService batchFlushExecutor;
+  protected java.util.concurrent.Executor asyncExecutor;
+  protected Integer cursorPrefetchDepth;
+  protected Integer lazyLoadBatchSize;
+  protected Integer eagerLoadBatchSize;
+  protected boolean rowMapperCompilationEnabled;
+  protected boolean resultSetShapeCacheEnabled;
+  protected CacheSerializer cacheSerializer = new JavaCacheSerializer();
   protected ResultSetType defaultResultSetType;
   protected ExecutorType defaultExecutorType = ExecutorType.SIMPLE;
   protected AutoMappingBehavior autoMappingBehavior = AutoMappingBehavior.PARTIAL;
@@ -173,6 +202,24 @@ public class Configuration {
    */
   protected final Map<String, String> cacheRefMap = new HashMap<>();
 
+  /*
+   * The number of column layouts of a statement or a result map whose shape or
+   * compiled row mapper is kept, the layouts seen later are not cached.
+   */
+  protected static final int MAX_CACHED_LAYOUTS = 8;
+
+  /*
+   * The row mappers compiled for flat result maps, by result map id and then
+   * by column layout of the result set.
+   */
+  protected final Map<String, Map<String, CompiledRowMapper>> compiledRowMappers = new ConcurrentHashMap<>();
+
+  /*
+   * The result set shapes shared by the executions of a statement, by
+   * statement id and then by column labels and types.
+   */
+  protected final Map<String, Map<String, ResultSetShape>> resultSetShapes = new ConcurrentHashMap<>();
+
   public Configuration(Environment environment) {
     this();
     this.environment = environment;
@@ -187,11 +234,17 @@ public class Configuration {
     typeAliasRegistry.registerAlias("UNPOOLED", UnpooledDataSourceFactory.class);
 
     typeAliasRegistry.registerAlias("PERPETUAL", PerpetualCache.class);
+    typeAliasRegistry.registerAlias("CONCURRENT", ConcurrentCache.class);
+    typeAliasRegistry.registerAlias("OFF_HEAP", OffHeapCache.class);
     typeAliasRegistry.registerAlias("FIFO", FifoCache.class);
     typeAliasRegistry.registerAlias("LRU", LruCache.class);
+    typeAliasRegistry.registerAlias("OVERFLOW", OverflowCache.class);
     typeAliasRegistry.registerAlias("SOFT", SoftCache.class);
     typeAliasRegistry.registerAlias("WEAK", WeakCache.class);
 
+    typeAliasRegistry.registerAlias("JAVA", JavaCacheSerializer.class);
+    typeAliasRegistry.registerAlias("BINARY", BinaryCacheSerializer.class);
+
     typeAliasRegistry.registerAlias("DB_VENDOR", VendorDatabaseIdProvider.class);
 
     typeAliasRegistry.registerAlias("XML", XMLLanguageDriver.class);
@@ -266,6 +319,292 @@ public class Configuration {
     this.returnInstanceForEmptyRow = returnEmptyInstance;
   }
 
+  /**
+   * @since 3.5.3
+   */
+  public boolean isBatchGroupingEnabled() {
+    return batchGroupingEnabled;
+  }
+
+  /**
+   * When enabled, the {@link org.apache.ibatis.executor.BatchExecutor} keeps one statement per distinct mapped statement
+   * and SQL until the next flush, instead of only reusing the statement of the previous update.
+   * Batches are executed in the order they were first used; call {@link SqlSession#flushStatements()} between updates
+   * that must not be reordered.
+   *
+   * @param batchGroupingEnabled whether batched updates are grouped
+   * @since 3.5.3
+   */
+  public void setBatchGroupingEnabled(boolean batchGroupingEnabled) {
+    this.batchGroupingEnabled = batchGroupingEnabled;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public Integer getBatchFlushRowsPerStatement() {
+    return batchFlushRowsPerStatement;
+  }
+
+  /**
+   * Makes the {@link org.apache.ibatis.executor.BatchExecutor} flush its pending batches once a single statement holds
+   * this many rows. The results are returned by the next {@link SqlSession#flushStatements()}.
+   *
+   * @param batchFlushRowsPerStatement the row count, or null to disable
+   * @since 3.5.3
+   */
+  public void setBatchFlushRowsPerStatement(Integer batchFlushRowsPerStatement) {
+    this.batchFlushRowsPerStatement = batchFlushRowsPerStatement;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public Integer getBatchFlushPendingRows() {
+    return batchFlushPendingRows;
+  }
+
+  /**
+   * Like {@link #setBatchFlushRowsPerStatement(Integer)}, but counts the rows of all pending statements.
+   *
+   * @param batchFlushPendingRows the row count, or null to disable
+   * @since 3.5.3
+   */
+  public void setBatchFlushPendingRows(Integer batchFlushPendingRows) {
+    this.batchFlushPendingRows = batchFlushPendingRows;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public Long getBatchFlushPendingBytes() {
+    return batchFlushPendingBytes;
+  }
+
+  /**
+   * Like {@link #setBatchFlushPendingRows(Integer)}, but limits an estimate of the memory held by the bound parameter
+   * values of all pending rows.
+   *
+   * @param batchFlushPendingBytes the size in bytes, or null to disable
+   * @since 3.5.3
+   */
+  public void setBatchFlushPendingBytes(Long batchFlushPendingBytes) {
+    this.batchFlushPendingBytes = batchFlushPendingBytes;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public Integer getBatchInsertRewriteRows() {
+    return batchInsertRewriteRows;
+  }
+
+  /**
+   * Makes the {@link org.apache.ibatis.executor.BatchExecutor} send the rows batched for a single row
+   * {@code INSERT ... VALUES (...)} as {@code INSERT ... VALUES (...), (...)} statements of up to this many rows,
+   * instead of a JDBC batch. The database must support multi-row inserts, and return one generated key per row
+   * when keys are used.
+   *
+   * @param batchInsertRewriteRows the maximum rows per statement, or null to disable
+   * @since 3.5.3
+   */
+  public void setBatchInsertRewriteRows(Integer batchInsertRewriteRows) {
+    this.batchInsertRewriteRows = batchInsertRewriteRows;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public Integer getBatchFlushThreads() {
+    return batchFlushThreads;
+  }
+
+  /**
+   * Makes the {@link org.apache.ibatis.executor.BatchExecutor} flush the batches of different mapped statements
+   * concurrently, each on its own connection of the environment data source, using up to this many threads.
+   * <p>
+   * Only use it for statements that are independent of each other: every connection commits its batches on its own,
+   * so they are neither part of the session transaction nor rolled back with it. Batches of statements using a select
+   * key still run on the session connection. The threads are shared by all sessions, and a flush fails right away if
+   * a {@link org.apache.ibatis.datasource.pooled.PooledDataSource} does not have more free connections than threads.
+   *
+   * @param batchFlushThreads the maximum number of connections used at a time, or null to disable
+   * @since 3.5.3
+   */
+  public synchronized void setBatchFlushThreads(Integer batchFlushThreads) {
+    this.batchFlushThreads = batchFlushThreads;
+    if (batchFlushExecutor != null) {
+      // the running flushes complete on the previous threads
+      batchFlushExecutor.shutdown();
+      batchFlushExecutor = null;
+    }
+  }
+
+  /**
+   * Returns the executor flushing batches in parallel, created on first use with {@link #getBatchFlushThreads()}
+   * daemon threads, which stop when idle.
+   *
+   * @return The executor, or null if batches are not flushed in parallel
+   * @since 3.5.3
+   */
+  public synchronized ExecutorService getBatchFlushExecutor() {
+    if (batchFlushExecutor == null && batchFlushThreads != null) {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(batchFlushThreads, batchFlushThreads, 60L, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "mybatis-batch-flush");
+            thread.setDaemon(true);
+            return thread;
+          });
+      executor.allowCoreThreadTimeOut(true);
+      batchFlushExecutor = executor;
+    }
+    return batchFlushExecutor;
+  }
+
+  /**
+   * Returns the executor running the mapper methods that return a {@link java.util.concurrent.CompletableFuture},
+   * and the calls of an {@link AsyncSqlSession}.
+   * Unless one is set, virtual threads are used when the JVM supports them, and a pool of daemon threads otherwise.
+   *
+   * @since 3.5.3
+   */
+  public java.util.concurrent.Executor getAsyncExecutor() {
+    return asyncExecutor == null ? DefaultAsyncExecutorHolder.INSTANCE : asyncExecutor;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public void setAsyncExecutor(java.util.concurrent.Executor asyncExecutor) {
+    this.asyncExecutor = asyncExecutor;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public Integer getCursorPrefetchDepth() {
+    return cursorPrefetchDepth;
+  }
+
+  /**
+   * Makes cursors map their rows ahead of the consumer on the {@link #getAsyncExecutor() async executor}, holding up
+   * to this many objects. While such a cursor is being read, the session that opened it must not be used.
+   *
+   * @param cursorPrefetchDepth the number of objects mapped ahead, or null to map rows on demand
+   * @since 3.5.3
+   * @see org.apache.ibatis.cursor.defaults.PrefetchingCursor
+   */
+  public void setCursorPrefetchDepth(Integer cursorPrefetchDepth) {
+    this.cursorPrefetchDepth = cursorPrefetchDepth;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public Integer getLazyLoadBatchSize() {
+    return lazyLoadBatchSize;
+  }
+
+  /**
+   * Makes the lazy loaders of the same nested select, created while mapping one statement, load together when the
+   * first of them is accessed, with one {@code IN (...)} query per this many keys.
+   *
+   * @param lazyLoadBatchSize the maximum number of keys loaded by one query, or null to load each property by itself
+   * @since 3.5.3
+   * @see org.apache.ibatis.executor.loader.BatchResultLoader
+   */
+  public void setLazyLoadBatchSize(Integer lazyLoadBatchSize) {
+    this.lazyLoadBatchSize = lazyLoadBatchSize;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public Integer getEagerLoadBatchSize() {
+    return eagerLoadBatchSize;
+  }
+
+  /**
+   * Makes the eager nested selects of a statement wait until its outermost query completes, and then run with one
+   * {@code IN (...)} query per nested select and this many keys. Statements using a result handler or a cursor still
+   * run their nested selects row by row.
+   *
+   * @param eagerLoadBatchSize the maximum number of keys loaded by one query, or null to run the nested select of each row
+   * @since 3.5.3
+   * @see org.apache.ibatis.executor.loader.BatchResultLoader
+   */
+  public void setEagerLoadBatchSize(Integer eagerLoadBatchSize) {
+    this.eagerLoadBatchSize = eagerLoadBatchSize;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public boolean isRowMapperCompilationEnabled() {
+    return rowMapperCompilationEnabled;
+  }
+
+  /**
+   * Maps the rows of flat result maps with a {@link CompiledRowMapper} built once per result map and column layout,
+   * binding the columns by index and setting the properties through method handles. Result maps with a discriminator,
+   * constructor mappings, nested result maps or nested queries are still mapped by name, and so are all result maps
+   * unless {@link #getAutoMappingUnknownColumnBehavior()} is {@link AutoMappingUnknownColumnBehavior#NONE}, as the
+   * unknown columns are reported on every execution. The mappers of the first {@value #MAX_CACHED_LAYOUTS} column
+   * layouts of each result map are kept.
+   *
+   * @param rowMapperCompilationEnabled whether flat result maps are mapped by compiled row mappers
+   * @since 3.5.3
+   */
+  public void setRowMapperCompilationEnabled(boolean rowMapperCompilationEnabled) {
+    this.rowMapperCompilationEnabled = rowMapperCompilationEnabled;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public boolean isResultSetShapeCacheEnabled() {
+    return resultSetShapeCacheEnabled;
+  }
+
+  /**
+   * Makes the executions of a statement share the type handlers, mapped and unmapped columns and auto-mappings
+   * resolved for its result sets, as long as the column labels and types stay the same. The shapes of the first
+   * {@value #MAX_CACHED_LAYOUTS} column layouts of each statement are kept.
+   * <p>
+   * Disabled by default. Once enabled, the type handlers of a column are resolved on the first execution of a
+   * statement with its layout, so type handlers registered afterwards, or a result set metadata reporting other
+   * column classes for the same labels and types, are not picked up.
+   *
+   * @param resultSetShapeCacheEnabled whether result set shapes are shared between executions
+   * @since 3.5.3
+   * @see ResultSetShape
+   */
+  public void setResultSetShapeCacheEnabled(boolean resultSetShapeCacheEnabled) {
+    this.resultSetShapeCacheEnabled = resultSetShapeCacheEnabled;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public CacheSerializer getCacheSerializer() {
+    return cacheSerializer;
+  }
+
+  /**
+   * Sets the serializer making the copies of the read-write second level caches, and of the caches having a
+   * {@code serializer} property. {@code JAVA} by default, {@code BINARY} is a faster and more compact alternative.
+   *
+   * @param cacheSerializer the cache serializer, or null for Java serialization
+   * @since 3.5.3
+   * @see BinaryCacheSerializer
+   */
+  public void setCacheSerializer(CacheSerializer cacheSerializer) {
+    if (cacheSerializer == null) {
+      cacheSerializer = new JavaCacheSerializer();
+    }
+    this.cacheSerializer = cacheSerializer;
+  }
+
   public String getDatabaseId() {
     return databaseId;
   }
@@ -760,6 +1099,65 @@ public class Configuration {
     return sqlFragments;
   }
 
+  /**
+   * @return A read-only view of the compiled row mappers by result map id and then by column layout
+   * @since 3.5.3
+   */
+  public Map<String, Map<String, CompiledRowMapper>> getCompiledRowMappers() {
+    return readOnlyLayouts(compiledRowMappers);
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public CompiledRowMapper getCompiledRowMapper(String resultMapId, String layout) {
+    Map<String, CompiledRowMapper> layouts = compiledRowMappers.get(resultMapId);
+    return layouts == null ? null : layouts.get(layout);
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public void addCompiledRowMapper(String resultMapId, String layout, CompiledRowMapper rowMapper) {
+    addLayout(compiledRowMappers.computeIfAbsent(resultMapId, id -> new ConcurrentHashMap<>()), layout, rowMapper);
+  }
+
+  /**
+   * @return A read-only view of the result set shapes by statement id and then by column layout
+   * @since 3.5.3
+   */
+  public Map<String, Map<String, ResultSetShape>> getResultSetShapes() {
+    return readOnlyLayouts(resultSetShapes);
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public ResultSetShape getResultSetShape(String statementId, String layout) {
+    Map<String, ResultSetShape> layouts = resultSetShapes.get(statementId);
+    return layouts == null ? null : layouts.get(layout);
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public void addResultSetShape(String statementId, String layout, ResultSetShape shape) {
+    addLayout(resultSetShapes.computeIfAbsent(statementId, id -> new ConcurrentHashMap<>()), layout, shape);
+  }
+
+  private static <V> Map<String, Map<String, V>> readOnlyLayouts(Map<String, Map<String, V>> cache) {
+    final Map<String, Map<String, V>> view = new HashMap<>();
+    cache.forEach((id, layouts) -> view.put(id, Collections.unmodifiableMap(layouts)));
+    return Collections.unmodifiableMap(view);
+  }
+
+  private static <V> void addLayout(Map<String, V> layouts, String layout, V value) {
+    // the bound may be exceeded by a few concurrent additions, which is harmless
+    if (layouts.size() < MAX_CACHED_LAYOUTS) {
+      layouts.putIfAbsent(layout, value);
+    }
+  }
+
   public void addInterceptor(Interceptor interceptor) {
     interceptorChain.addInterceptor(interceptor);
   }
@@ -1000,4 +1398,23 @@ public class Configuration {
     }
   }
 
+  private static class DefaultAsyncExecutorHolder {
+
+    private static final java.util.concurrent.Executor INSTANCE = create();
+
+    private static java.util.concurrent.Executor create() {
+      try {
+        // JDK 21+
+        return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      } catch (ReflectiveOperationException e) {
+        return Executors.newCachedThreadPool(runnable -> {
+          Thread thread = new Thread(runnable, "mybatis-async");
+          thread.setDaemon(true);
+          return thread;
+        });
+      }
+    }
+
+  }
+
 }
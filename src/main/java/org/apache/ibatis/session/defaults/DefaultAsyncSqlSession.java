@@ -0,0 +1,127 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.session.defaults;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import org.apache.ibatis.session.AsyncSqlSession;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionManager;
+
+/**
+ * The default implementation for {@link AsyncSqlSession}.
+ *
+ * @since 3.5.3
+ */
+public class DefaultAsyncSqlSession implements AsyncSqlSession {
+
+  private final SqlSessionFactory sqlSessionFactory;
+  private final SqlSessionManager sqlSessionManager;
+
+  public DefaultAsyncSqlSession(SqlSessionFactory sqlSessionFactory) {
+    this.sqlSessionFactory = sqlSessionFactory;
+    this.sqlSessionManager = SqlSessionManager.newInstance(sqlSessionFactory);
+  }
+
+  @Override
+  public <T> CompletableFuture<T> selectOne(String statement) {
+    return submit(sqlSession -> sqlSession.selectOne(statement));
+  }
+
+  @Override
+  public <T> CompletableFuture<T> selectOne(String statement, Object parameter) {
+    return submit(sqlSession -> sqlSession.selectOne(statement, parameter));
+  }
+
+  @Override
+  public <E> CompletableFuture<List<E>> selectList(String statement) {
+    return submit(sqlSession -> sqlSession.selectList(statement));
+  }
+
+  @Override
+  public <E> CompletableFuture<List<E>> selectList(String statement, Object parameter) {
+    return submit(sqlSession -> sqlSession.selectList(statement, parameter));
+  }
+
+  @Override
+  public <E> CompletableFuture<List<E>> selectList(String statement, Object parameter, RowBounds rowBounds) {
+    return submit(sqlSession -> sqlSession.selectList(statement, parameter, rowBounds));
+  }
+
+  @Override
+  public <K, V> CompletableFuture<Map<K, V>> selectMap(String statement, Object parameter, String mapKey) {
+    return submit(sqlSession -> sqlSession.selectMap(statement, parameter, mapKey));
+  }
+
+  @Override
+  public CompletableFuture<Integer> insert(String statement, Object parameter) {
+    return submit(sqlSession -> sqlSession.insert(statement, parameter));
+  }
+
+  @Override
+  public CompletableFuture<Integer> update(String statement, Object parameter) {
+    return submit(sqlSession -> sqlSession.update(statement, parameter));
+  }
+
+  @Override
+  public CompletableFuture<Integer> delete(String statement, Object parameter) {
+    return submit(sqlSession -> sqlSession.delete(statement, parameter));
+  }
+
+  @Override
+  public <T> T getMapper(Class<T> type) {
+    return getConfiguration().getMapper(type, sqlSessionManager);
+  }
+
+  @Override
+  public Configuration getConfiguration() {
+    return sqlSessionFactory.getConfiguration();
+  }
+
+  private <T> CompletableFuture<T> submit(Function<SqlSession, T> task) {
+    return submit(sqlSessionFactory, task);
+  }
+
+  /**
+   * Runs a task on the async executor in a session of its own, committed if the task succeeds.
+   *
+   * @param <T> the result type
+   * @param sqlSessionFactory the factory opening the session
+   * @param task the task
+   * @return The result of the task
+   */
+  public static <T> CompletableFuture<T> submit(SqlSessionFactory sqlSessionFactory, Function<SqlSession, T> task) {
+    return CompletableFuture.supplyAsync(() -> {
+      try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+        try {
+          T result = task.apply(sqlSession);
+          sqlSession.commit();
+          return result;
+        } catch (RuntimeException e) {
+          sqlSession.rollback();
+          throw e;
+        }
+      }
+    }, sqlSessionFactory.getConfiguration().getAsyncExecutor());
+  }
+
+}
@@ -0,0 +1,63 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.type;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * A type handler that can also read its column as a primitive, so that mapping it to a primitive property does not
+ * box the value.
+ * <p>
+ * The primitive getters return the JDBC default ({@code 0} or {@code false}) for SQL {@code NULL} and read the column
+ * last, so the caller can tell the two apart with {@link ResultSet#wasNull()}. They bypass
+ * {@link BaseTypeHandler#getNullableResult(ResultSet, int)}, so the result mappers only call them on the built-in
+ * handlers, never on their subclasses.
+ *
+ * @param <T> the boxed type
+ * @since 3.5.3
+ */
+public interface PrimitiveTypeHandler<T> extends TypeHandler<T> {
+
+  interface OfBoolean extends PrimitiveTypeHandler<Boolean> {
+    boolean getBooleanResult(ResultSet rs, int columnIndex) throws SQLException;
+  }
+
+  interface OfByte extends PrimitiveTypeHandler<Byte> {
+    byte getByteResult(ResultSet rs, int columnIndex) throws SQLException;
+  }
+
+  interface OfShort extends PrimitiveTypeHandler<Short> {
+    short getShortResult(ResultSet rs, int columnIndex) throws SQLException;
+  }
+
+  interface OfInt extends PrimitiveTypeHandler<Integer> {
+    int getIntResult(ResultSet rs, int columnIndex) throws SQLException;
+  }
+
+  interface OfLong extends PrimitiveTypeHandler<Long> {
+    long getLongResult(ResultSet rs, int columnIndex) throws SQLException;
+  }
+
+  interface OfFloat extends PrimitiveTypeHandler<Float> {
+    float getFloatResult(ResultSet rs, int columnIndex) throws SQLException;
+  }
+
+  interface OfDouble extends PrimitiveTypeHandler<Double> {
+    double getDoubleResult(ResultSet rs, int columnIndex) throws SQLException;
+  }
+
+}
@@ -28,6 +28,8 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import javassist.util.proxy.Proxy;
 
@@ -45,11 +47,13 @@ import org.apache.ibatis.domain.blog.Section;
 import org.apache.ibatis.exceptions.PersistenceException;
 import org.apache.ibatis.executor.result.DefaultResultHandler;
 import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.AsyncSqlSession;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.session.defaults.DefaultAsyncSqlSession;
 import org.apache.ibatis.transaction.TransactionFactory;
 import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
 import org.junit.jupiter.api.Assertions;
@@ -92,6 +96,36 @@ class BindingTest {
     }
   }
 
+  @Test
+  void shouldNotRunAsyncMethodOnPlainSession() {
+    try (SqlSession session = sqlSessionFactory.openSession()) {
+      BoundAuthorMapper mapper = session.getMapper(BoundAuthorMapper.class);
+      assertThrows(BindingException.class, () -> mapper.selectAuthorAsync(101));
+    }
+  }
+
+  @Test
+  void shouldOverlapAsyncSelects() throws Exception {
+    AsyncSqlSession session = new DefaultAsyncSqlSession(sqlSessionFactory);
+    BoundAuthorMapper mapper = session.getMapper(BoundAuthorMapper.class);
+    List<CompletableFuture<Author>> authors = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      authors.add(mapper.selectAuthorAsync(101));
+    }
+    for (CompletableFuture<Author> author : authors) {
+      assertEquals("jim", author.get(5, TimeUnit.SECONDS).getUsername());
+    }
+  }
+
+  @Test
+  void shouldSelectAuthorWithAsyncSqlSession() throws Exception {
+    AsyncSqlSession session = new DefaultAsyncSqlSession(sqlSessionFactory);
+    CompletableFuture<Author> author = session.selectOne(BoundAuthorMapper.class.getName() + ".selectAuthor", 101);
+    CompletableFuture<Author> mapped = session.getMapper(BoundAuthorMapper.class).selectAuthorAsync(101);
+    assertEquals("jim", author.get(5, TimeUnit.SECONDS).getUsername());
+    assertEquals("jim", mapped.get(5, TimeUnit.SECONDS).getUsername());
+  }
+
   @Test
   void shouldFindPostsInList() {
     try (SqlSession session = sqlSessionFactory.openSession()) {
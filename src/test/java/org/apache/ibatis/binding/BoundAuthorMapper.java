@@ -23,6 +23,7 @@ import org.apache.ibatis.executor.BatchResult;
 import org.apache.ibatis.session.RowBounds;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @CacheNamespace(readWrite = false)
 public interface BoundAuthorMapper {
@@ -68,6 +69,21 @@ public interface BoundAuthorMapper {
 
   //======================================================
 
+  @ConstructorArgs({
+      @Arg(column = "AUTHOR_ID", javaType = int.class)
+  })
+  @Results({
+      @Result(property = "username", column = "AUTHOR_USERNAME")
+  })
+  @Select({
+      "SELECT ",
+      "  ID as AUTHOR_ID,",
+      "  USERNAME as AUTHOR_USERNAME",
+      "FROM AUTHOR WHERE ID = #{id}"})
+  CompletableFuture<Author> selectAuthorAsync(int id);
+
+  //======================================================
+
   @ConstructorArgs({
       @Arg(column = "AUTHOR_ID", javaType = Integer.class),
       @Arg(column = "AUTHOR_USERNAME", javaType = String.class),
@@ -0,0 +1,116 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.impl.BinaryCacheSerializer;
+import org.apache.ibatis.cache.impl.JavaCacheSerializer;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.jupiter.api.Test;
+
+class BinaryCacheSerializerTest {
+
+  private final CacheSerializer serializer = new BinaryCacheSerializer();
+
+  @Test
+  void shouldCopyValueTypes() {
+    List<Object> values = Arrays.asList(null, "text", "été", 1, -1L, 1.5D, 2.5F, (short) 3, (byte) 4, true,
+        'c', new BigDecimal("-12.345"), new Date(), new java.sql.Timestamp(1000L), LocalDateTime.now(), Thread.State.NEW,
+        new byte[] { 1, 2 }, new int[] { 3, 4 });
+    List<?> copy = (List<?>) serializer.deserialize(serializer.serialize(new ArrayList<>(values)));
+    assertEquals(values.subList(0, 16), copy.subList(0, 16));
+    assertArrayEquals(new byte[] { 1, 2 }, (byte[]) copy.get(16));
+    assertArrayEquals(new int[] { 3, 4 }, (int[]) copy.get(17));
+  }
+
+  @Test
+  void shouldCopyBeans() {
+    Author author = new Author();
+    author.id = 1;
+    author.name = "author";
+    author.posts = new ArrayList<>();
+    Post post = new Post();
+    post.author = author;
+    post.tags = new HashMap<>();
+    post.tags.put("java", 1);
+    author.posts.add(post);
+    author.posts.add(post);
+
+    Author copy = (Author) serializer.deserialize(serializer.serialize(author));
+    assertNotSame(author, copy);
+    assertEquals(Integer.valueOf(1), copy.id);
+    assertEquals("author", copy.name);
+    assertEquals(2, copy.posts.size());
+    assertSame(copy.posts.get(0), copy.posts.get(1));
+    assertSame(copy, copy.posts.get(0).author);
+    assertEquals(post.tags, copy.posts.get(0).tags);
+  }
+
+  @Test
+  void shouldFallBackToJavaSerialization() {
+    Replaced value = new Replaced();
+    value.name = "replaced";
+    assertEquals("replaced", ((Replaced) serializer.deserialize(serializer.serialize(value))).name);
+    assertEquals("java", serializer.deserialize(new JavaCacheSerializer().serialize("java")));
+  }
+
+  @Test
+  void shouldBeUsedByReadWriteCache() {
+    Cache cache = new SerializedCache(new PerpetualCache("default"), serializer);
+    Author author = new Author();
+    author.name = "author";
+    cache.putObject(0, author);
+    Author copy = (Author) cache.getObject(0);
+    assertNotSame(author, copy);
+    assertEquals("author", copy.name);
+    assertThrows(CacheException.class, () -> cache.putObject(1, new Object()));
+  }
+
+  static class Author implements Serializable {
+    private static final long serialVersionUID = 1L;
+    Integer id;
+    String name;
+    List<Post> posts;
+  }
+
+  static class Post implements Serializable {
+    private static final long serialVersionUID = 1L;
+    Author author;
+    Map<String, Object> tags;
+  }
+
+  static class Replaced implements Serializable {
+    private static final long serialVersionUID = 1L;
+    String name;
+
+    private Object writeReplace() {
+      return this;
+    }
+  }
+
+}
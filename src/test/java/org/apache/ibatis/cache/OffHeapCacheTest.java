@@ -0,0 +1,100 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ibatis.cache.impl.OffHeapCache;
+import org.junit.jupiter.api.Test;
+
+class OffHeapCacheTest {
+
+  @Test
+  void shouldReturnCopiesOfCachedObjects() {
+    OffHeapCache cache = newCache(4096, 1024);
+    List<String> value = new ArrayList<>(Arrays.asList("a", "b"));
+    cache.putObject(0, value);
+    Object cached = cache.getObject(0);
+    assertEquals(value, cached);
+    assertNotSame(value, cached);
+    assertNull(cache.getObject(1));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  void shouldEvictOldestSlabWhenFull() {
+    OffHeapCache cache = newCache(4096, 1024);
+    for (int i = 0; i < 100; i++) {
+      cache.putObject(i, new byte[200]);
+    }
+    assertNull(cache.getObject(0));
+    assertNotNull(cache.getObject(99));
+    assertTrue(cache.getEvictionCount() > 0);
+    assertEquals(100, cache.getSize() + cache.getEvictionCount());
+    assertTrue(cache.getUsedBytes() <= cache.getCapacity());
+  }
+
+  @Test
+  void shouldNotCacheObjectLargerThanSlab() {
+    OffHeapCache cache = newCache(4096, 1024);
+    cache.putObject(0, new byte[2048]);
+    assertNull(cache.getObject(0));
+  }
+
+  @Test
+  void shouldRejectNonSerializableObjects() {
+    OffHeapCache cache = newCache(4096, 1024);
+    assertThrows(CacheException.class, () -> cache.putObject(0, new Object()));
+  }
+
+  @Test
+  void shouldRemoveItemOnDemand() {
+    OffHeapCache cache = newCache(4096, 1024);
+    cache.putObject(0, 0);
+    assertNotNull(cache.getObject(0));
+    cache.removeObject(0);
+    assertNull(cache.getObject(0));
+    assertEquals(0, cache.getUsedBytes());
+  }
+
+  @Test
+  void shouldFlushAllItemsOnDemand() {
+    OffHeapCache cache = newCache(4096, 1024);
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    assertNotNull(cache.getObject(0));
+    assertNotNull(cache.getObject(4));
+    cache.clear();
+    assertNull(cache.getObject(0));
+    assertNull(cache.getObject(4));
+    assertEquals(0, cache.getSize());
+  }
+
+  private OffHeapCache newCache(long capacity, int slabSize) {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setCapacity(capacity);
+    cache.setSlabSize(slabSize);
+    cache.initialize();
+    return cache;
+  }
+
+}
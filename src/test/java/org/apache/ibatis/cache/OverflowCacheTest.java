@@ -0,0 +1,145 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.apache.ibatis.cache.decorators.OverflowCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OverflowCacheTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void shouldSpillLeastRecentlyUsedItemsToDisk() {
+    OverflowCache cache = newCache(false);
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, "value " + i);
+    }
+    assertEquals(5, cache.getSize());
+    for (int i = 0; i < 5; i++) {
+      assertEquals("value " + i, cache.getObject(i));
+    }
+  }
+
+  @Test
+  void shouldReplaceSpilledItem() {
+    OverflowCache cache = newCache(false);
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, "value " + i);
+    }
+    cache.putObject(0, "new value");
+    for (int i = 1; i < 5; i++) {
+      cache.getObject(i);
+    }
+    assertEquals("new value", cache.getObject(0));
+  }
+
+  @Test
+  void shouldEvictOldestItemsWhenDiskIsFull() {
+    OverflowCache cache = newCache(false);
+    for (int i = 0; i < 500; i++) {
+      cache.putObject(i, new byte[100]);
+    }
+    assertNull(cache.getObject(0));
+    assertNotNull(cache.getObject(499));
+    assertTrue(cache.getSize() < 500);
+  }
+
+  @Test
+  void shouldKeepSpilledItemsAcrossInstancesWhenPersistent() {
+    OverflowCache cache = newCache(true);
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, "value " + i);
+    }
+    cache.removeObject(1);
+    cache.close();
+    OverflowCache reopened = newCache(true);
+    assertEquals("value 0", reopened.getObject(0));
+    assertNull(reopened.getObject(1));
+    assertEquals("value 2", reopened.getObject(2));
+    // the entries still in memory are written out on close
+    assertEquals("value 3", reopened.getObject(3));
+    assertEquals("value 4", reopened.getObject(4));
+    reopened.close();
+  }
+
+  @Test
+  void shouldFlushAllItemsOnDemand() {
+    OverflowCache cache = newCache(true);
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, "value " + i);
+    }
+    cache.clear();
+    assertNull(cache.getObject(0));
+    assertNull(cache.getObject(4));
+    cache.close();
+    assertEquals(0, newCache(true).getSize());
+  }
+
+  @Test
+  void shouldNotShareFilesOfPersistentCache() {
+    OverflowCache cache = newCache(true);
+    assertThrows(CacheException.class, () -> newCache(true));
+    cache.close();
+    newCache(true).close();
+  }
+
+  @Test
+  void shouldRequireDirectoryWhenPersistent() {
+    OverflowCache cache = new OverflowCache(new PerpetualCache("default"));
+    cache.setPersistent(true);
+    assertThrows(CacheException.class, cache::initialize);
+  }
+
+  @Test
+  void shouldDeleteFilesOfTemporaryCacheOnClose() throws IOException {
+    OverflowCache cache = newCache(false);
+    OverflowCache other = newCache(false);
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, "value " + i);
+      other.putObject(i, "other value " + i);
+    }
+    assertEquals("value 0", cache.getObject(0));
+    assertEquals("other value 0", other.getObject(0));
+    cache.close();
+    other.close();
+    try (Stream<Path> files = Files.list(directory)) {
+      assertEquals(0L, files.count());
+    }
+  }
+
+  private OverflowCache newCache(boolean persistent) {
+    OverflowCache cache = new OverflowCache(new PerpetualCache("default"));
+    cache.setSize(2);
+    cache.setDirectory(directory.toString());
+    cache.setDiskSize(4096);
+    cache.setSegmentSize(1024);
+    cache.setPersistent(persistent);
+    cache.initialize();
+    return cache;
+  }
+
+}
@@ -0,0 +1,99 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.WeightedCache;
+import org.apache.ibatis.cache.impl.EstimatingWeigher;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.impl.SerializedWeigher;
+import org.junit.jupiter.api.Test;
+
+class WeightedCacheTest {
+
+  @Test
+  void shouldRemoveLeastRecentlyUsedItemsBeyondMaxBytes() {
+    WeightedCache cache = new WeightedCache(new PerpetualCache("default"));
+    cache.setWeigher((key, value) -> ((byte[]) value).length);
+    cache.setMaxBytes(100);
+    cache.putObject(0, new byte[40]);
+    cache.putObject(1, new byte[40]);
+    assertNotNull(cache.getObject(0));
+    cache.putObject(2, new byte[40]);
+    assertNotNull(cache.getObject(0));
+    assertNull(cache.getObject(1));
+    assertNotNull(cache.getObject(2));
+    assertEquals(80, cache.getTotalBytes());
+  }
+
+  @Test
+  void shouldNotKeepItemHeavierThanMaxBytes() {
+    WeightedCache cache = new WeightedCache(new PerpetualCache("default"));
+    cache.setWeigher((key, value) -> ((byte[]) value).length);
+    cache.setMaxBytes(100);
+    cache.putObject(0, new byte[200]);
+    assertNull(cache.getObject(0));
+    assertEquals(0, cache.getTotalBytes());
+  }
+
+  @Test
+  void shouldReleaseItemsEvictedByOtherDecorators() {
+    WeightedCache weightedCache = new WeightedCache(new PerpetualCache("default"));
+    weightedCache.setWeigher((key, value) -> ((byte[]) value).length);
+    LruCache cache = new LruCache(weightedCache);
+    cache.setSize(1);
+    cache.putObject(0, new byte[40]);
+    cache.putObject(1, new byte[40]);
+    assertEquals(40, weightedCache.getTotalBytes());
+  }
+
+  @Test
+  void shouldFlushAllItemsOnDemand() {
+    WeightedCache cache = new WeightedCache(new PerpetualCache("default"));
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    assertTrue(cache.getTotalBytes() > 0);
+    cache.clear();
+    assertNull(cache.getObject(0));
+    assertEquals(0, cache.getTotalBytes());
+  }
+
+  @Test
+  void shouldWeighLargerListsMore() {
+    List<String> rows = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      rows.add("row " + i);
+    }
+    Weigher weigher = new EstimatingWeigher();
+    assertTrue(weigher.weigh(0, rows) > 10 * weigher.weigh(0, rows.subList(0, 10)));
+    assertTrue(weigher.weigh(0, rows) > weigher.weigh(0, Collections.emptyList()));
+  }
+
+  @Test
+  void shouldWeighSerializedPayloadByLength() {
+    Weigher weigher = new SerializedWeigher();
+    assertEquals(weigher.weigh(0, new byte[0]) + 1000, weigher.weigh(0, new byte[1000]));
+    assertTrue(weigher.weigh(0, new ArrayList<>(Collections.nCopies(100, "row"))) > 0);
+  }
+
+}
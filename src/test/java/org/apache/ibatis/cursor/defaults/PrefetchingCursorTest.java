@@ -0,0 +1,174 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cursor.defaults;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PrefetchingCursorTest {
+
+  private ExecutorService executor;
+
+  @BeforeEach
+  void setUp() {
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    executor.shutdownNow();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void shouldStopWhenClosedMidIteration() {
+    RowCursor rows = new RowCursor(100, -1);
+    PrefetchingCursor<Integer> cursor = new PrefetchingCursor<>(rows, 2, executor);
+    Iterator<Integer> iterator = cursor.iterator();
+    assertEquals(0, iterator.next());
+    assertEquals(1, iterator.next());
+    cursor.close();
+    assertFalse(iterator.hasNext());
+    assertFalse(cursor.isOpen());
+    assertFalse(cursor.isConsumed());
+    assertEquals(1, cursor.getCurrentIndex());
+    assertTrue(rows.closed);
+  }
+
+  @Test
+  void shouldWakeConsumerWhenClosedFromAnotherThread() throws Exception {
+    AtomicReference<PrefetchingCursor<Integer>> holder = new AtomicReference<>();
+    // keeps the background thread busy until the cursor is closed, so the consumer waits on an empty buffer
+    RowCursor rows = new RowCursor(0, -1) {
+      @Override
+      boolean hasRow() {
+        while (holder.get().isOpen()) {
+          try {
+            Thread.sleep(10);
+          } catch (InterruptedException e) {
+            return false;
+          }
+        }
+        return false;
+      }
+    };
+    PrefetchingCursor<Integer> cursor = new PrefetchingCursor<>(rows, 2, executor);
+    holder.set(cursor);
+    Iterator<Integer> iterator = cursor.iterator();
+    executor.execute(() -> {
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        return;
+      }
+      cursor.close();
+    });
+    assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertFalse(iterator.hasNext()));
+    assertFalse(cursor.isConsumed());
+    assertTrue(rows.closed);
+  }
+
+  @Test
+  void shouldThrowMappingFailureAfterPreviousRows() {
+    RowCursor rows = new RowCursor(10, 3);
+    PrefetchingCursor<Integer> cursor = new PrefetchingCursor<>(rows, 2, executor);
+    Iterator<Integer> iterator = cursor.iterator();
+    assertEquals(0, iterator.next());
+    assertEquals(1, iterator.next());
+    assertEquals(2, iterator.next());
+    IllegalStateException e = assertThrows(IllegalStateException.class, iterator::hasNext);
+    assertSame(rows.failure, e);
+    assertFalse(iterator.hasNext());
+    assertTrue(cursor.isConsumed());
+    assertEquals(2, cursor.getCurrentIndex());
+    cursor.close();
+    assertTrue(rows.closed);
+  }
+
+  /*
+   * Returns the numbers from 0, failing to map the row at failingRow.
+   */
+  private static class RowCursor implements Cursor<Integer> {
+    private final int count;
+    private final int failingRow;
+    private final IllegalStateException failure = new IllegalStateException("Error mapping row.");
+    private volatile boolean closed;
+    private int next;
+
+    RowCursor(int count, int failingRow) {
+      this.count = count;
+      this.failingRow = failingRow;
+    }
+
+    boolean hasRow() {
+      return next < count;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return !closed;
+    }
+
+    @Override
+    public boolean isConsumed() {
+      return next >= count;
+    }
+
+    @Override
+    public int getCurrentIndex() {
+      return next - 1;
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+      return new Iterator<Integer>() {
+        @Override
+        public boolean hasNext() {
+          return hasRow();
+        }
+
+        @Override
+        public Integer next() {
+          if (next == failingRow) {
+            throw failure;
+          }
+          return next++;
+        }
+      };
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+  @Test
+  void shouldMapValuesToContiguousBuckets() {
+    for (int index = 0; index < 400; index++) {
+      long lower = LatencyHistogram.lowerBoundOf(index);
+      assertEquals(index, LatencyHistogram.indexOf(lower));
+      assertEquals(index, LatencyHistogram.indexOf(LatencyHistogram.upperBoundOf(index)));
+    }
+  }
+
+  @Test
+  void shouldReportPercentilesWithinBucketPrecision() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long value = 1; value <= 1000; value++) {
+      histogram.record(value * 1000);
+    }
+    PoolMetrics.Latency latency = histogram.snapshot();
+    assertEquals(1000, latency.getCount());
+    assertWithinPrecision(500_000, latency.getP50());
+    assertWithinPrecision(990_000, latency.getP99());
+    assertWithinPrecision(999_000, latency.getP999());
+    assertWithinPrecision(1_000_000, latency.getMax());
+  }
+
+  @Test
+  void shouldReportZeroWhenEmpty() {
+    PoolMetrics.Latency latency = new LatencyHistogram().snapshot();
+    assertEquals(0, latency.getCount());
+    assertEquals(0, latency.getP99());
+    assertEquals(0, latency.getMax());
+  }
+
+  private void assertWithinPrecision(long expected, long actual) {
+    assertTrue(actual >= expected && actual <= expected * 1.125, "expected about " + expected + " but was " + actual);
+  }
+
+}
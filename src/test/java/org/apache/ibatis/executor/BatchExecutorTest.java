@@ -15,7 +15,24 @@
  */
 package org.apache.ibatis.executor;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.domain.blog.Section;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
 import org.junit.jupiter.api.Test;
 
 class BatchExecutorTest extends BaseExecutorTest {
@@ -24,6 +41,180 @@ class BatchExecutorTest extends BaseExecutorTest {
   void dummy() {
   }
 
+  @Test
+  void shouldCreateOneBatchPerStatementChangeByDefault() throws Exception {
+    List<BatchResult> results = interleaveInsertsAndUpdates();
+    assertEquals(4, results.size());
+  }
+
+  @Test
+  void shouldGroupInterleavedStatementsWhenEnabled() throws Exception {
+    config.setBatchGroupingEnabled(true);
+    List<BatchResult> results = interleaveInsertsAndUpdates();
+    assertEquals(2, results.size());
+    assertEquals("insertAuthor", results.get(0).getMappedStatement().getId());
+    assertEquals(2, results.get(0).getParameterObjects().size());
+    assertEquals(2, results.get(0).getUpdateCounts().length);
+    assertEquals("updateAuthor", results.get(1).getMappedStatement().getId());
+    assertEquals(2, results.get(1).getParameterObjects().size());
+  }
+
+  @Test
+  void shouldAutoFlushWhenStatementReachesRowLimit() throws Exception {
+    config.setBatchFlushRowsPerStatement(2);
+    List<BatchResult> results = insertAuthors(5);
+    assertEquals(3, results.size());
+    assertEquals(2, results.get(0).getUpdateCounts().length);
+    assertEquals(2, results.get(1).getUpdateCounts().length);
+    assertEquals(1, results.get(2).getUpdateCounts().length);
+  }
+
+  @Test
+  void shouldAutoFlushWhenPendingBytesReachLimit() throws Exception {
+    config.setBatchFlushPendingBytes(1L);
+    List<BatchResult> results = insertAuthors(3);
+    assertEquals(3, results.size());
+  }
+
+  @Test
+  void shouldRewriteBatchedInsertsToMultiRowInserts() throws Exception {
+    config.setBatchInsertRewriteRows(2);
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement insertStatement = ExecutorTestHelper.prepareInsertAuthorMappedStatement(config);
+      MappedStatement selectStatement = ExecutorTestHelper.prepareSelectOneAuthorMappedStatement(config);
+      for (int i = 0; i < 5; i++) {
+        executor.update(insertStatement, new Author(600 + i, "user" + i, "******", "user@apache.org", null, Section.NEWS));
+      }
+      List<BatchResult> results = executor.flushStatements();
+      assertEquals(1, results.size());
+      assertArrayEquals(new int[] { 1, 1, 1, 1, 1 }, results.get(0).getUpdateCounts());
+      List<Author> authors = executor.query(selectStatement, 604, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      assertEquals("user4", authors.get(0).getUsername());
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  @Test
+  void shouldFlushStatementsInParallelOnSeparateConnections() throws Exception {
+    config.setEnvironment(new Environment("parallel", new JdbcTransactionFactory(), ds));
+    config.setBatchGroupingEnabled(true);
+    config.setBatchFlushThreads(2);
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement insertStatement = ExecutorTestHelper.prepareInsertAuthorMappedStatement(config);
+      MappedStatement deleteStatement = ExecutorTestHelper.prepareDeleteAuthorMappedStatement(config);
+      executor.update(insertStatement, new Author(700, "one", "******", "one@apache.org", null, Section.NEWS));
+      executor.update(deleteStatement, new Author(799));
+      executor.update(insertStatement, new Author(701, "two", "******", "two@apache.org", null, Section.NEWS));
+      List<BatchResult> results = executor.flushStatements();
+      assertEquals(2, results.size());
+      assertArrayEquals(new int[] { 1, 1 }, results.get(0).getUpdateCounts());
+      assertArrayEquals(new int[] { 0 }, results.get(1).getUpdateCounts());
+
+      executor.update(deleteStatement, new Author(700));
+      executor.update(deleteStatement, new Author(701));
+      results = executor.flushStatements();
+      assertArrayEquals(new int[] { 1, 1 }, results.get(0).getUpdateCounts());
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  @Test
+  void shouldNotFlushInParallelWithoutFreePooledConnections() throws Exception {
+    PooledDataSource pooledDataSource = createPooledDataSource(BLOG_PROPERTIES);
+    pooledDataSource.setPoolMaximumActiveConnections(2);
+    config.setEnvironment(new Environment("parallel", new JdbcTransactionFactory(), pooledDataSource));
+    config.setBatchFlushThreads(2);
+    Executor executor = createExecutor(new JdbcTransaction(pooledDataSource, null, false));
+    try {
+      MappedStatement insertStatement = ExecutorTestHelper.prepareInsertAuthorMappedStatement(config);
+      executor.update(insertStatement, new Author(700, "one", "******", "one@apache.org", null, Section.NEWS));
+      assertThrows(ExecutorException.class, executor::flushStatements);
+      assertEquals(0, pooledDataSource.getPoolState().getRequestCount());
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+      pooledDataSource.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldRestoreAutoCommitOfParallelFlushConnections() throws Exception {
+    PooledDataSource pooledDataSource = createPooledDataSource(BLOG_PROPERTIES);
+    pooledDataSource.setPoolMaximumActiveConnections(4);
+    pooledDataSource.setDefaultAutoCommit(true);
+    config.setEnvironment(new Environment("parallel", new JdbcTransactionFactory(), pooledDataSource));
+    config.setBatchGroupingEnabled(true);
+    config.setBatchFlushThreads(2);
+    Executor executor = createExecutor(new JdbcTransaction(pooledDataSource, null, false));
+    try {
+      MappedStatement insertStatement = ExecutorTestHelper.prepareInsertAuthorMappedStatement(config);
+      MappedStatement deleteStatement = ExecutorTestHelper.prepareDeleteAuthorMappedStatement(config);
+      executor.update(deleteStatement, new Author(798));
+      executor.update(deleteStatement, new Author(799));
+      executor.update(insertStatement, new Author(700, "one", "******", "one@apache.org", null, Section.NEWS));
+      executor.flushStatements();
+      executor.update(deleteStatement, new Author(700));
+      executor.flushStatements();
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+    try {
+      int idle = pooledDataSource.getPoolState().getIdleConnectionCount();
+      assertTrue(idle > 0);
+      List<Connection> connections = new ArrayList<>();
+      try {
+        for (int i = 0; i < idle; i++) {
+          Connection connection = pooledDataSource.getConnection();
+          connections.add(connection);
+          assertTrue(connection.getAutoCommit());
+        }
+      } finally {
+        for (Connection connection : connections) {
+          connection.close();
+        }
+      }
+    } finally {
+      pooledDataSource.forceCloseAll();
+    }
+  }
+
+  private List<BatchResult> insertAuthors(int count) throws Exception {
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement insertStatement = ExecutorTestHelper.prepareInsertAuthorMappedStatement(config);
+      for (int i = 0; i < count; i++) {
+        executor.update(insertStatement, new Author(600 + i, "user" + i, "******", "user@apache.org", null, Section.NEWS));
+      }
+      return executor.flushStatements();
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  private List<BatchResult> interleaveInsertsAndUpdates() throws Exception {
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement insertStatement = ExecutorTestHelper.prepareInsertAuthorMappedStatement(config);
+      MappedStatement updateStatement = ExecutorTestHelper.prepareUpdateAuthorMappedStatement(config);
+      executor.update(insertStatement, new Author(500, "one", "******", "one@apache.org", null, Section.NEWS));
+      executor.update(updateStatement, new Author(101, "jim", "******", "jim@apache.org", "bio", Section.NEWS));
+      executor.update(insertStatement, new Author(501, "two", "******", "two@apache.org", null, Section.NEWS));
+      executor.update(updateStatement, new Author(102, "sally", "******", "sally@apache.org", "bio", Section.NEWS));
+      return executor.flushStatements();
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
   @Override
   protected Executor createExecutor(Transaction transaction) {
     return new BatchExecutor(config, transaction);
@@ -16,8 +16,14 @@
 package org.apache.ibatis.executor.resultset;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.sql.Connection;
@@ -129,6 +135,51 @@ class DefaultResultSetHandlerTest {
     }
   }
 
+  @Test
+  void shouldShareResultSetShapeBetweenExecutions() throws Exception {
+    final MappedStatement ms = getMappedStatement();
+    final Configuration config = ms.getConfiguration();
+    assertFalse(config.isResultSetShapeCacheEnabled());
+    config.setResultSetShapeCacheEnabled(true);
+
+    when(rs.getMetaData()).thenReturn(rsmd);
+    when(rsmd.getColumnCount()).thenReturn(1);
+    when(rsmd.getColumnLabel(1)).thenReturn("CoLuMn1");
+    when(rsmd.getColumnType(1)).thenReturn(Types.INTEGER);
+    when(rsmd.getColumnClassName(1)).thenReturn(Integer.class.getCanonicalName());
+
+    final ResultSetWrapper first = new ResultSetWrapper(rs, config, ms);
+    final ResultSetWrapper second = new ResultSetWrapper(rs, config, ms);
+    assertSame(first.getShape(), second.getShape());
+    assertSame(first.getTypeHandler(Integer.class, "CoLuMn1"), second.getTypeHandler(Integer.class, "CoLuMn1"));
+    assertEquals(1, config.getResultSetShapes().size());
+    verify(rsmd, times(1)).getColumnClassName(1);
+
+    config.setResultSetShapeCacheEnabled(false);
+    assertNotSame(first.getShape(), new ResultSetWrapper(rs, config, ms).getShape());
+  }
+
+  @Test
+  void shouldKeepOnlyFirstResultSetShapesOfStatement() throws Exception {
+    final MappedStatement ms = getMappedStatement();
+    final Configuration config = ms.getConfiguration();
+    config.setResultSetShapeCacheEnabled(true);
+
+    when(rs.getMetaData()).thenReturn(rsmd);
+    when(rsmd.getColumnCount()).thenReturn(1);
+    when(rsmd.getColumnType(1)).thenReturn(Types.INTEGER);
+    when(rsmd.getColumnClassName(1)).thenReturn(Integer.class.getCanonicalName());
+
+    for (int i = 0; i < 20; i++) {
+      when(rsmd.getColumnLabel(1)).thenReturn("column" + i);
+      new ResultSetWrapper(rs, config, ms);
+    }
+    assertEquals(1, config.getResultSetShapes().size());
+    assertEquals(8, config.getResultSetShapes().get(ms.getId()).size());
+    assertTrue(config.getResultSetShapes().get(ms.getId()).keySet().stream()
+        .allMatch(layout -> layout.matches("column[0-7] INTEGER")));
+  }
+
   MappedStatement getMappedStatement() {
     final Configuration config = new Configuration();
     final TypeHandlerRegistry registry = config.getTypeHandlerRegistry();
@@ -16,18 +16,33 @@
 package org.apache.ibatis.jdbc;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
+import java.lang.management.ManagementFactory;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.management.ObjectName;
 
 import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.datasource.DataSourceException;
+import org.apache.ibatis.datasource.pooled.PoolMetrics;
 import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
+import org.apache.ibatis.io.Resources;
 import org.hsqldb.jdbc.JDBCConnection;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -75,6 +90,385 @@ class PooledDataSourceTest extends BaseDataTest {
     }
   }
 
+  @Test
+  void shouldProperlyMaintainLockFreePoolOf3ActiveAnd2IdleConnections() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolLockFreeEnabled(true);
+      ds.setPoolMaximumActiveConnections(3);
+      ds.setPoolMaximumIdleConnections(2);
+      List<Connection> connections = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        connections.add(ds.getConnection());
+      }
+      assertEquals(3, ds.getPoolState().getActiveConnectionCount());
+      assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+      for (Connection c : connections) {
+        c.close();
+      }
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+      assertEquals(2, ds.getPoolState().getIdleConnectionCount());
+      assertEquals(3, ds.getPoolState().getRequestCount());
+      assertEquals(0, ds.getPoolState().getBadConnectionCount());
+      assertEquals(0, ds.getPoolState().getHadToWaitCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldHandOffLockFreeConnectionsBetweenConcurrentThreads() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    ExecutorService executor = Executors.newFixedThreadPool(16);
+    try {
+      ds.setPoolLockFreeEnabled(true);
+      ds.setPoolMaximumActiveConnections(2);
+      ds.setPoolMaximumIdleConnections(2);
+      // open both connections up front, so that the threads below have to share them
+      Connection first = ds.getConnection();
+      ds.getConnection().close();
+      first.close();
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        futures.add(executor.submit(() -> {
+          try (Connection c = ds.getConnection()) {
+            assertTrue(ds.getPoolState().getActiveConnectionCount() <= 2);
+            Thread.sleep(1);
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+      assertEquals(202, ds.getPoolState().getRequestCount());
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+      assertEquals(2, ds.getPoolState().getIdleConnectionCount());
+      assertEquals(0, ds.getPoolState().getBadConnectionCount());
+      assertTrue(ds.getPoolState().getHadToWaitCount() > 0);
+    } finally {
+      executor.shutdownNow();
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldWakeWaiterWhenReturnedConnectionIsClosed() throws Exception {
+    shouldWakeWaiterWhenReturnedConnectionIsClosed(false);
+    shouldWakeWaiterWhenReturnedConnectionIsClosed(true);
+  }
+
+  private void shouldWakeWaiterWhenReturnedConnectionIsClosed(boolean lockFree) throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      ds.setPoolLockFreeEnabled(lockFree);
+      ds.setPoolMaximumActiveConnections(1);
+      // returned connections are closed instead of kept idle
+      ds.setPoolMaximumIdleConnections(0);
+      ds.setPoolTimeToWait(20000);
+      Connection c = ds.getConnection();
+      Future<Long> waited = executor.submit(() -> {
+        long start = System.currentTimeMillis();
+        ds.getConnection().close();
+        return System.currentTimeMillis() - start;
+      });
+      while (ds.getPoolState().getHadToWaitCount() == 0) {
+        Thread.sleep(10);
+      }
+      c.close();
+      assertTrue(waited.get(30, TimeUnit.SECONDS) < 10000);
+    } finally {
+      executor.shutdownNow();
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldNotChangePoolModeWhileConnectionsAreCheckedOut() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      Connection c = ds.getConnection();
+      assertThrows(DataSourceException.class, () -> ds.setPoolLockFreeEnabled(true));
+      c.close();
+      ds.setPoolLockFreeEnabled(true);
+      ds.getConnection().close();
+      assertEquals(0, ds.getPoolState().getBadConnectionCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldServeThousandsOfWaitersWithBoundedLatency() throws Exception {
+    assertServesThousandsOfWaiters(false);
+  }
+
+  @Test
+  void shouldServeThousandsOfWaitersWithBoundedLatencyWhenLockFree() throws Exception {
+    assertServesThousandsOfWaiters(true);
+  }
+
+  private void assertServesThousandsOfWaiters(boolean lockFree) throws Exception {
+    ExecutorService executor = newVirtualThreadExecutor();
+    assumeTrue(executor != null, "Virtual threads are not available");
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    AtomicInteger pinned = new AtomicInteger();
+    AutoCloseable pinnedEvents = null;
+    try {
+      pinnedEvents = recordPinnedVirtualThreads(pinned);
+      ds.setPoolLockFreeEnabled(lockFree);
+      ds.setPoolMaximumActiveConnections(10);
+      ds.setPoolMaximumIdleConnections(10);
+      ds.setPoolTimeToWait(4000);
+      // opens the connections up front, so that the waits only measure the hand-offs
+      List<Connection> connections = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+        connections.add(ds.getConnection());
+      }
+      for (Connection connection : connections) {
+        connection.close();
+      }
+      long[] waits = new long[2000];
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < waits.length; i++) {
+        int index = i;
+        futures.add(executor.submit(() -> {
+          long start = System.nanoTime();
+          try (Connection c = ds.getConnection()) {
+            waits[index] = System.nanoTime() - start;
+            Thread.sleep(1);
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(60, TimeUnit.SECONDS);
+      }
+      stopRecording(pinnedEvents);
+      assertEquals(2010, ds.getPoolState().getRequestCount());
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+      // a waiter parked while pinned to its carrier thread keeps the other virtual threads from running
+      assertEquals(0, pinned.get(), "Virtual threads were pinned to their carrier threads");
+      Arrays.sort(waits);
+      long timeToWait = TimeUnit.MILLISECONDS.toNanos(ds.getPoolTimeToWait());
+      long p99 = waits[waits.length * 99 / 100 - 1];
+      long max = waits[waits.length - 1];
+      // the 2000 tasks hold a connection for about 200 ms in total, so a waiter that got to the end of a timeout,
+      // and had to wait again, was starved
+      assertTrue(p99 < timeToWait / 2, "p99 wait of " + TimeUnit.NANOSECONDS.toMillis(p99) + " ms");
+      assertTrue(max < timeToWait, "longest wait of " + TimeUnit.NANOSECONDS.toMillis(max) + " ms");
+    } finally {
+      if (pinnedEvents != null) {
+        pinnedEvents.close();
+      }
+      executor.shutdownNow();
+      ds.forceCloseAll();
+    }
+  }
+
+  private ExecutorService newVirtualThreadExecutor() {
+    try {
+      // virtual threads are only available on newer JDKs
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+      return null;
+    }
+  }
+
+  /*
+   * Counts the virtual threads parked for more than 20 ms while pinned to their carrier thread, with the JFR event
+   * that -Djdk.tracePinnedThreads reports on. The JFR API is looked up reflectively as the tests are built for Java 8.
+   */
+  private AutoCloseable recordPinnedVirtualThreads(AtomicInteger pinned) throws ReflectiveOperationException {
+    Class<?> streamType = Class.forName("jdk.jfr.consumer.RecordingStream");
+    AutoCloseable stream = (AutoCloseable) streamType.getConstructor().newInstance();
+    Object settings = streamType.getMethod("enable", String.class).invoke(stream, "jdk.VirtualThreadPinned");
+    Class.forName("jdk.jfr.EventSettings").getMethod("withThreshold", Duration.class).invoke(settings, Duration.ofMillis(20));
+    Consumer<Object> counter = event -> pinned.incrementAndGet();
+    streamType.getMethod("onEvent", String.class, Consumer.class).invoke(stream, "jdk.VirtualThreadPinned", counter);
+    streamType.getMethod("startAsync").invoke(stream);
+    return stream;
+  }
+
+  private void stopRecording(AutoCloseable stream) throws ReflectiveOperationException {
+    // delivers the pending events before returning
+    stream.getClass().getMethod("stop").invoke(stream);
+  }
+
+  @Test
+  void shouldKeepMinimumIdleConnectionsFromHousekeeper() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMinimumIdleConnections(2);
+      ds.setPoolHousekeepingPeriod(50);
+      for (int i = 0; i < 100 && ds.getPoolState().getIdleConnectionCount() < 2; i++) {
+        Thread.sleep(50);
+      }
+      assertEquals(2, ds.getPoolState().getIdleConnectionCount());
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+      assertEquals(0, ds.getPoolState().getBadConnectionCount());
+    } finally {
+      ds.setPoolHousekeepingPeriod(0);
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldWarmUpMinimumIdleConnectionsWhenBuiltByFactory() throws Exception {
+    Properties props = Resources.getResourceAsProperties(JPETSTORE_PROPERTIES);
+    props.setProperty("poolMinimumIdleConnections", "3");
+    PooledDataSourceFactory factory = new PooledDataSourceFactory();
+    factory.setProperties(props);
+    PooledDataSource ds = (PooledDataSource) factory.getDataSource();
+    try {
+      assertEquals(3, ds.getPoolState().getIdleConnectionCount());
+      Connection c = ds.getConnection();
+      assertEquals(2, ds.getPoolState().getIdleConnectionCount());
+      c.close();
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldReportMetricsSnapshot() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      Connection c1 = ds.getConnection();
+      Connection c2 = ds.getConnection();
+      c2.close();
+      PoolMetrics metrics = ds.getPoolState().getMetrics();
+      assertEquals(1, metrics.getActiveConnections());
+      assertEquals(1, metrics.getIdleConnections());
+      assertEquals(0, metrics.getPendingRequests());
+      assertEquals(2, metrics.getCheckoutWait().getCount());
+      assertEquals(1, metrics.getCheckoutHold().getCount());
+      assertEquals(2, metrics.getConnectionCreation().getCount());
+      assertTrue(metrics.getConnectionCreation().getP50() > 0);
+      assertTrue(metrics.getCheckoutWait().getP50() <= metrics.getCheckoutWait().getP999());
+      c1.close();
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldExposePoolStateThroughJmx() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    ObjectName name = new ObjectName("org.mybatis:type=PooledDataSource,name=PooledDataSourceTest");
+    try {
+      ds.setPoolJmxName(name.toString());
+      ds.getConnection().close();
+      assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "RequestCount"));
+      assertNotNull(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Metrics"));
+    } finally {
+      ds.setPoolJmxName(null);
+      ds.forceCloseAll();
+    }
+    assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+  }
+
+  @Test
+  void shouldReportLeakedConnectionOnce() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolLeakDetectionThreshold(20);
+      ds.setPoolLeakDetectionSampleRate(1);
+      Connection c = ds.getConnection();
+      for (int i = 0; i < 100 && ds.getPoolState().getLeakedConnectionCount() == 0; i++) {
+        Thread.sleep(20);
+      }
+      Thread.sleep(100);
+      assertEquals(1, ds.getPoolState().getLeakedConnectionCount());
+      c.close();
+      ds.getConnection().close();
+      assertEquals(1, ds.getPoolState().getLeakedConnectionCount());
+    } finally {
+      ds.setPoolLeakDetectionThreshold(0);
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldReusePreparedStatementsAcrossCheckouts() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolPreparedStatementCacheSize(2);
+      ds.setPoolMaximumActiveConnections(1);
+      for (int i = 0; i < 3; i++) {
+        try (Connection c = ds.getConnection();
+             PreparedStatement st = c.prepareStatement("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS");
+             ResultSet rs = st.executeQuery()) {
+          assertTrue(rs.next());
+        }
+      }
+      assertEquals(1, ds.getPoolState().getPreparedStatementCacheMissCount());
+      assertEquals(2, ds.getPoolState().getPreparedStatementCacheHitCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldCloseOpenResultSetOfCachedPreparedStatement() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolPreparedStatementCacheSize(2);
+      try (Connection c = ds.getConnection()) {
+        PreparedStatement st = c.prepareStatement("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS");
+        ResultSet rs = st.executeQuery();
+        st.close();
+        assertTrue(rs.isClosed());
+        assertEquals(1, ds.getPoolState().getPreparedStatementCacheMissCount());
+        c.prepareStatement("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS").close();
+        assertEquals(1, ds.getPoolState().getPreparedStatementCacheHitCount());
+      }
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldNotShareCachedPreparedStatementInUse() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolPreparedStatementCacheSize(2);
+      try (Connection c = ds.getConnection()) {
+        PreparedStatement st1 = c.prepareStatement("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS");
+        PreparedStatement st2 = c.prepareStatement("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS");
+        assertNotSame(st1, st2);
+        st1.setMaxRows(1);
+        st1.close();
+        st2.close();
+        assertTrue(st1.isClosed());
+        assertThrows(SQLException.class, st1::executeQuery);
+        try (PreparedStatement st3 = c.prepareStatement("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS")) {
+          assertEquals(0, st3.getMaxRows());
+          assertSame(c, st3.getConnection());
+        }
+      }
+      assertEquals(2, ds.getPoolState().getPreparedStatementCacheMissCount());
+      assertEquals(1, ds.getPoolState().getPreparedStatementCacheHitCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldRetireConnectionsPastMaximumLifetime() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumLifetime(10);
+      Connection c = ds.getConnection();
+      Thread.sleep(20);
+      c.close();
+      assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
   @Test
   void shouldNotFailCallingToStringOverAnInvalidConnection() throws Exception {
     PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
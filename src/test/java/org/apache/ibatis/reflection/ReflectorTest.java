@@ -18,6 +18,7 @@ package org.apache.ibatis.reflection;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.Serializable;
+import java.lang.reflect.InvocationTargetException;
 import java.util.Arrays;
 import java.util.List;
 
@@ -322,4 +323,39 @@ class ReflectorTest {
             "Ambiguous setters defined for property 'bool' in class '" + Bean.class.getName().replace("$", "\\$")
                 + "' with types '(java.lang.Integer|boolean)' and '(java.lang.Integer|boolean)'\\.");
   }
+
+  @Test
+  void shouldReportExceptionsOfInvokedMethods() throws Exception {
+    ReflectorFactory reflectorFactory = new DefaultReflectorFactory();
+    Reflector reflector = reflectorFactory.findForClass(FailingBean.class);
+    when(reflector.getSetInvoker("value")).invoke(new FailingBean(), new Object[] { -1 });
+    then(caughtException()).isInstanceOf(InvocationTargetException.class)
+        .hasCauseInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void shouldRejectNullForPrimitiveProperty() throws Exception {
+    ReflectorFactory reflectorFactory = new DefaultReflectorFactory();
+    Reflector reflector = reflectorFactory.findForClass(FailingBean.class);
+    FailingBean bean = new FailingBean();
+    reflector.getSetInvoker("value").invoke(bean, new Object[] { 2 });
+    assertEquals(2, reflector.getGetInvoker("value").invoke(bean, null));
+    when(reflector.getSetInvoker("value")).invoke(bean, new Object[] { null });
+    then(caughtException()).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  public static class FailingBean {
+    private int value;
+
+    public int getValue() {
+      return value;
+    }
+
+    public void setValue(int value) {
+      if (value < 0) {
+        throw new IllegalStateException("negative value");
+      }
+      this.value = value;
+    }
+  }
 }
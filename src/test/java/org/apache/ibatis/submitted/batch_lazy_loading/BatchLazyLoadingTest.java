@@ -0,0 +1,162 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.batch_lazy_loading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.Reader;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BatchLazyLoadingTest {
+
+  private static SqlSessionFactory sqlSessionFactory;
+  private static QueryCounter queryCounter;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/batch_lazy_loading/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    queryCounter = new QueryCounter();
+    sqlSessionFactory.getConfiguration().addInterceptor(queryCounter);
+
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/batch_lazy_loading/CreateDB.sql");
+  }
+
+  @Test
+  void shouldLoadTheAuthorsOfAllBooksInChunks() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Book> books = sqlSession.getMapper(Mapper.class).getBooks();
+      assertEquals(1, queryCounter.count);
+
+      assertEquals("Author2", books.get(1).getAuthor().getName());
+      // three distinct authors with a batch size of 2
+      assertEquals(3, queryCounter.count);
+
+      assertEquals("Author1", books.get(0).getAuthor().getName());
+      assertSame(books.get(0).getAuthor(), books.get(2).getAuthor());
+      assertEquals("Author3", books.get(3).getAuthor().getName());
+      assertNull(books.get(4).getAuthor());
+      assertEquals(3, queryCounter.count);
+    }
+  }
+
+  @Test
+  void shouldLoadOneByOneWhenDisabled() {
+    sqlSessionFactory.getConfiguration().setLazyLoadBatchSize(null);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Book> books = sqlSession.getMapper(Mapper.class).getBooks();
+      assertEquals("Author2", books.get(1).getAuthor().getName());
+      assertEquals(2, queryCounter.count);
+      assertEquals("Author1", books.get(0).getAuthor().getName());
+      assertEquals(3, queryCounter.count);
+    }
+  }
+
+  @Test
+  void shouldLoadEagerAuthorsInChunksAfterTheBooks() {
+    sqlSessionFactory.getConfiguration().setEagerLoadBatchSize(2);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Book> books = sqlSession.getMapper(Mapper.class).getBooksWithEagerAuthors();
+      assertEquals(3, queryCounter.count);
+      assertEquals("Author1", books.get(0).getAuthor().getName());
+      assertEquals("Author2", books.get(1).getAuthor().getName());
+      assertSame(books.get(0).getAuthor(), books.get(2).getAuthor());
+      assertEquals("Author3", books.get(3).getAuthor().getName());
+      assertNull(books.get(4).getAuthor());
+    }
+  }
+
+  @Test
+  void shouldDiscardEagerLoadsOfFailedQuery() {
+    sqlSessionFactory.getConfiguration().setEagerLoadBatchSize(2);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      queryCounter.failing = true;
+      assertThrows(PersistenceException.class, mapper::getBooksWithEagerAuthors);
+      queryCounter.failing = false;
+      queryCounter.count = 0;
+      assertEquals("Author1", mapper.getAuthor(1).getName());
+      // the authors of the failed query are not loaded afterwards
+      assertEquals(1, queryCounter.count);
+    }
+  }
+
+  @Test
+  void shouldLoadEagerAuthorsRowByRowForResultHandlers() {
+    sqlSessionFactory.getConfiguration().setEagerLoadBatchSize(2);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Book> books = new ArrayList<>();
+      sqlSession.select("org.apache.ibatis.submitted.batch_lazy_loading.Mapper.getBooksWithEagerAuthors",
+          context -> books.add((Book) context.getResultObject()));
+      assertEquals("Author2", books.get(1).getAuthor().getName());
+      // one query per distinct author
+      assertEquals(4, queryCounter.count);
+    }
+  }
+
+  @Intercepts(@Signature(type = StatementHandler.class, method = "query", args = { Statement.class, ResultHandler.class }))
+  static class QueryCounter implements Interceptor {
+
+    int count;
+    boolean failing;
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+      count++;
+      Object result = invocation.proceed();
+      if (failing) {
+        throw new SQLException("Query failed after mapping its rows");
+      }
+      return result;
+    }
+
+    @Override
+    public Object plugin(Object target) {
+      return Plugin.wrap(target, this);
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+
+  }
+
+}
@@ -0,0 +1,39 @@
+--
+--    Copyright ${license.git.copyrightYears} the original author or authors.
+--
+--    Licensed under the Apache License, Version 2.0 (the "License");
+--    you may not use this file except in compliance with the License.
+--    You may obtain a copy of the License at
+--
+--       http://www.apache.org/licenses/LICENSE-2.0
+--
+--    Unless required by applicable law or agreed to in writing, software
+--    distributed under the License is distributed on an "AS IS" BASIS,
+--    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--    See the License for the specific language governing permissions and
+--    limitations under the License.
+--
+
+drop table books if exists;
+drop table authors if exists;
+
+create table authors (
+  id int,
+  name varchar(20)
+);
+
+create table books (
+  id int,
+  title varchar(20),
+  author_id int
+);
+
+insert into authors (id, name) values(1, 'Author1');
+insert into authors (id, name) values(2, 'Author2');
+insert into authors (id, name) values(3, 'Author3');
+
+insert into books (id, title, author_id) values(1, 'Book1', 1);
+insert into books (id, title, author_id) values(2, 'Book2', 2);
+insert into books (id, title, author_id) values(3, 'Book3', 1);
+insert into books (id, title, author_id) values(4, 'Book4', 3);
+insert into books (id, title, author_id) values(5, 'Book5', null);
@@ -0,0 +1,47 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.batch_lazy_loading;
+
+import java.util.List;
+
+import org.apache.ibatis.annotations.One;
+import org.apache.ibatis.annotations.Result;
+import org.apache.ibatis.annotations.Results;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.mapping.FetchType;
+
+public interface Mapper {
+
+  @Select("select * from books order by id")
+  @Results({
+      @Result(property = "id", column = "id", id = true),
+      @Result(property = "title", column = "title"),
+      @Result(property = "author", column = "author_id", one = @One(select = "getAuthor", fetchType = FetchType.LAZY))
+  })
+  List<Book> getBooks();
+
+  @Select("select * from books order by id")
+  @Results({
+      @Result(property = "id", column = "id", id = true),
+      @Result(property = "title", column = "title"),
+      @Result(property = "author", column = "author_id", one = @One(select = "getAuthor", fetchType = FetchType.EAGER))
+  })
+  List<Book> getBooksWithEagerAuthors();
+
+  @Select("select * from authors a where a.id = #{id}")
+  Author getAuthor(Integer id);
+
+}
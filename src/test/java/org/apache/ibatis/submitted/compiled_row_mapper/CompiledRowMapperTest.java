@@ -0,0 +1,122 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.compiled_row_mapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Reader;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.executor.resultset.CompiledRowMapper;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.AutoMappingUnknownColumnBehavior;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class CompiledRowMapperTest {
+
+  private static SqlSessionFactory sqlSessionFactory;
+
+  @BeforeAll
+  static void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/compiled_row_mapper/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/compiled_row_mapper/CreateDB.sql");
+  }
+
+  @Test
+  void shouldMapAutoMappedColumns() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<User> users = sqlSession.getMapper(Mapper.class).getUsers();
+      assertEquals(2, users.size());
+      assertEquals(Integer.valueOf(1), users.get(0).getId());
+      assertEquals("User1", users.get(0).getName());
+      assertEquals(30, users.get(0).getAge());
+      assertTrue(users.get(0).isActive());
+      assertEquals(0, users.get(1).getAge());
+      assertFalse(users.get(1).isActive());
+    }
+    assertTrue(sqlSessionFactory.getConfiguration().getCompiledRowMappers().keySet().stream()
+        .anyMatch(key -> key.startsWith("org.apache.ibatis.submitted.compiled_row_mapper.Mapper.getUsers-")));
+  }
+
+  @Test
+  void shouldMapResultMappingsAndAutoMappedColumns() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<User> users = mapper.getUsersWithResultMap();
+      assertEquals("User1", users.get(0).getName());
+      assertEquals(30, users.get(0).getAge());
+      sqlSession.clearCache();
+      // the second execution reuses the compiled mapper
+      assertEquals("User2", mapper.getUsersWithResultMap().get(1).getName());
+    }
+  }
+
+  @Test
+  void shouldLeavePrimitivePropertyUnsetForNullColumn() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<User> users = sqlSession.getMapper(Mapper.class).getUsersWithResultMap();
+      assertEquals(30, users.get(0).getAge());
+      assertEquals(0, users.get(1).getAge());
+    }
+  }
+
+  @Test
+  void shouldReadPrimitiveColumnWithSubclassedTypeHandler() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<User> users = sqlSession.getMapper(Mapper.class).getUsersWithCustomTypeHandler();
+      assertEquals(30, users.get(0).getAge());
+      assertEquals(-1, users.get(1).getAge());
+    }
+  }
+
+  @Test
+  void shouldNotCompileRowMapperWhenUnknownColumnsAreReported() {
+    Configuration configuration = sqlSessionFactory.getConfiguration();
+    configuration.setAutoMappingUnknownColumnBehavior(AutoMappingUnknownColumnBehavior.WARNING);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertEquals("User1", mapper.getUsersWithUnknownColumn().get(0).getName());
+      sqlSession.clearCache();
+      // every execution reports the unknown column again
+      assertEquals("User2", mapper.getUsersWithUnknownColumn().get(1).getName());
+    } finally {
+      configuration.setAutoMappingUnknownColumnBehavior(AutoMappingUnknownColumnBehavior.NONE);
+    }
+    assertFalse(configuration.getCompiledRowMappers().keySet().stream()
+        .anyMatch(key -> key.startsWith("org.apache.ibatis.submitted.compiled_row_mapper.Mapper.getUsersWithUnknownColumn")));
+  }
+
+  @Test
+  void shouldNotModifyCompiledRowMappersFromOutside() {
+    Map<String, Map<String, CompiledRowMapper>> compiledRowMappers = sqlSessionFactory.getConfiguration().getCompiledRowMappers();
+    assertThrows(UnsupportedOperationException.class, compiledRowMappers::clear);
+  }
+
+}
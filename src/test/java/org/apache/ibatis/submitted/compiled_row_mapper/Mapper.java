@@ -0,0 +1,46 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.compiled_row_mapper;
+
+import java.util.List;
+
+import org.apache.ibatis.annotations.Result;
+import org.apache.ibatis.annotations.Results;
+import org.apache.ibatis.annotations.Select;
+
+public interface Mapper {
+
+  @Select("select * from users order by id")
+  List<User> getUsers();
+
+  @Select("select id, name as user_name, age from users order by id")
+  @Results({
+      @Result(property = "id", column = "id", id = true),
+      @Result(property = "name", column = "user_name")
+  })
+  List<User> getUsersWithResultMap();
+
+  @Select("select id, age from users order by id")
+  @Results({
+      @Result(property = "id", column = "id", id = true),
+      @Result(property = "age", column = "age", typeHandler = NullAsMinusOneTypeHandler.class)
+  })
+  List<User> getUsersWithCustomTypeHandler();
+
+  @Select("select id, name, 'none' as nickname from users order by id")
+  List<User> getUsersWithUnknownColumn();
+
+}
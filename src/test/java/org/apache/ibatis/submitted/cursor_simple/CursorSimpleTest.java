@@ -17,6 +17,8 @@ package org.apache.ibatis.submitted.cursor_simple;
 
 import org.apache.ibatis.BaseDataTest;
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.cursor.CursorPublisher;
+import org.apache.ibatis.cursor.defaults.PrefetchingCursor;
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.session.SqlSession;
@@ -387,4 +389,117 @@ class CursorSimpleTest {
 
   }
 
+  @Test
+  void shouldPublishOnlyRequestedUsers() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Cursor<User> usersCursor = sqlSession.getMapper(Mapper.class).getAllUsers();
+      List<String> names = new ArrayList<>();
+      CursorPublisher.Subscription[] subscription = new CursorPublisher.Subscription[1];
+      new CursorPublisher<>(usersCursor).subscribe(new CursorPublisher.Subscriber<User>() {
+        @Override
+        public void onSubscribe(CursorPublisher.Subscription s) {
+          subscription[0] = s;
+        }
+
+        @Override
+        public void onNext(User item) {
+          names.add(item.getName());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+          Assertions.fail(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+          names.add("complete");
+        }
+      });
+
+      Assertions.assertFalse(usersCursor.isOpen());
+      subscription[0].request(2);
+      Assertions.assertEquals(2, names.size());
+      Assertions.assertEquals(1, usersCursor.getCurrentIndex());
+
+      subscription[0].cancel();
+      Assertions.assertFalse(usersCursor.isOpen());
+      Assertions.assertEquals(2, names.size());
+    }
+  }
+
+  @Test
+  void shouldPublishAllUsersAndComplete() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Cursor<User> usersCursor = sqlSession.getMapper(Mapper.class).getAllUsers();
+      List<String> names = new ArrayList<>();
+      new CursorPublisher<>(usersCursor).subscribe(new CursorPublisher.Subscriber<User>() {
+        @Override
+        public void onSubscribe(CursorPublisher.Subscription s) {
+          s.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(User item) {
+          names.add(item.getName());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+          Assertions.fail(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+          names.add("complete");
+        }
+      });
+
+      Assertions.assertEquals(6, names.size());
+      Assertions.assertEquals("complete", names.get(5));
+      Assertions.assertTrue(usersCursor.isConsumed());
+    }
+  }
+
+  @Test
+  void shouldPrefetchUsers() throws IOException {
+    sqlSessionFactory.getConfiguration().setCursorPrefetchDepth(2);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Cursor<User> usersCursor = sqlSession.getMapper(Mapper.class).getAllUsers();
+      Assertions.assertTrue(usersCursor instanceof PrefetchingCursor);
+      List<String> names = new ArrayList<>();
+      for (User user : usersCursor) {
+        names.add(user.getName());
+      }
+      Assertions.assertEquals(5, names.size());
+      Assertions.assertEquals("User5", names.get(4));
+      Assertions.assertEquals(4, usersCursor.getCurrentIndex());
+      Assertions.assertTrue(usersCursor.isConsumed());
+      usersCursor.close();
+    } finally {
+      sqlSessionFactory.getConfiguration().setCursorPrefetchDepth(null);
+    }
+  }
+
+  @Test
+  void shouldStopPrefetchingUsersWhenClosedMidIteration() throws IOException {
+    sqlSessionFactory.getConfiguration().setCursorPrefetchDepth(1);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Cursor<User> usersCursor = sqlSession.getMapper(Mapper.class).getAllUsers();
+      Iterator<User> iterator = usersCursor.iterator();
+      Assertions.assertEquals("User1", iterator.next().getName());
+      Assertions.assertEquals("User2", iterator.next().getName());
+      usersCursor.close();
+      Assertions.assertFalse(iterator.hasNext());
+      Assertions.assertFalse(usersCursor.isOpen());
+      Assertions.assertFalse(usersCursor.isConsumed());
+      Assertions.assertEquals(1, usersCursor.getCurrentIndex());
+
+      // the session can be used again once the cursor is closed
+      Assertions.assertEquals(5, sqlSession.selectList("org.apache.ibatis.submitted.cursor_simple.Mapper.getAllUsers").size());
+    } finally {
+      sqlSessionFactory.getConfiguration().setCursorPrefetchDepth(null);
+    }
+  }
+
 }
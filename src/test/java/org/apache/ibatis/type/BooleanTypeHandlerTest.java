@@ -17,6 +17,7 @@ package org.apache.ibatis.type;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -86,4 +87,11 @@ class BooleanTypeHandlerTest extends BaseTypeHandlerTest {
     assertNull(TYPE_HANDLER.getResult(cs, 1));
   }
 
-}
\ No newline at end of file
+  @Test
+  void shouldGetPrimitiveResultFromResultSetByPosition() throws Exception {
+    PrimitiveTypeHandler.OfBoolean handler = (PrimitiveTypeHandler.OfBoolean) TYPE_HANDLER;
+    when(rs.getBoolean(1)).thenReturn(true);
+    assertTrue(handler.getBooleanResult(rs, 1));
+  }
+
+}
@@ -87,4 +87,11 @@ class DoubleTypeHandlerTest extends BaseTypeHandlerTest {
     assertNull(TYPE_HANDLER.getResult(cs, 1));
   }
 
-}
\ No newline at end of file
+  @Test
+  void shouldGetPrimitiveResultFromResultSetByPosition() throws Exception {
+    PrimitiveTypeHandler.OfDouble handler = (PrimitiveTypeHandler.OfDouble) TYPE_HANDLER;
+    when(rs.getDouble(1)).thenReturn(100d);
+    assertEquals(100d, handler.getDoubleResult(rs, 1), 0d);
+  }
+
+}
@@ -87,4 +87,11 @@ class IntegerTypeHandlerTest extends BaseTypeHandlerTest {
     assertNull(TYPE_HANDLER.getResult(cs, 1));
   }
 
-}
\ No newline at end of file
+  @Test
+  void shouldGetPrimitiveResultFromResultSetByPosition() throws Exception {
+    PrimitiveTypeHandler.OfInt handler = (PrimitiveTypeHandler.OfInt) TYPE_HANDLER;
+    when(rs.getInt(1)).thenReturn(100);
+    assertEquals(100, handler.getIntResult(rs, 1));
+  }
+
+}
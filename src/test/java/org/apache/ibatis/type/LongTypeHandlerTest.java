@@ -87,4 +87,11 @@ class LongTypeHandlerTest extends BaseTypeHandlerTest {
     assertNull(TYPE_HANDLER.getResult(cs, 1));
   }
 
-}
\ No newline at end of file
+  @Test
+  void shouldGetPrimitiveResultFromResultSetByPosition() throws Exception {
+    PrimitiveTypeHandler.OfLong handler = (PrimitiveTypeHandler.OfLong) TYPE_HANDLER;
+    when(rs.getLong(1)).thenReturn(100L);
+    assertEquals(100L, handler.getLongResult(rs, 1));
+  }
+
+}